@@ -29,6 +29,19 @@ import java.util.Random;
             //   ReplacementAlgorithm.FIFO
             //   ReplacementAlgorithm.LFU
             //   ReplacementAlgorithm.RANDOM
+            //   ReplacementAlgorithm.TREE_PLRU
+            //   ReplacementAlgorithm.BIT_PLRU
+            //   ReplacementAlgorithm.CLOCK
+            //   ReplacementAlgorithm.LIP
+            //   ReplacementAlgorithm.BIP
+            //   ReplacementAlgorithm.DIP
+            //   ReplacementAlgorithm.SRRIP
+            //   ReplacementAlgorithm.BRRIP
+            //   ReplacementAlgorithm.DRRIP
+            //   ReplacementAlgorithm.ARC
+            //   ReplacementAlgorithm.LIRS
+            // or a replacement algorithm of your own (see ReplacementPolicyProvider), by name:
+            // policy = "MY_POLICY"
         ),
         @Cache(
             name = "L2",
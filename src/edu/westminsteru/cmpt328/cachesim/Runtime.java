@@ -18,6 +18,8 @@ import java.util.prefs.*;
 
 import java.util.*;
 
+// The simulated memory system is built timing-only (see Memory.isTimingOnly()): the program's values live in its own
+// variables and arrays, so the simulation only needs to know which addresses are touched
 public final class Runtime {
 
     private static MemorySystem sys;
@@ -35,7 +37,7 @@ public final class Runtime {
         return sys;
     }
 
-    private static Map<Object, Integer> arrayAddresses = new IdentityHashMap<>();
+    private static Map<Object, Long> arrayAddresses = new IdentityHashMap<>();
 
     public static void viewStatistics() {
         system().viewStatistics();
@@ -73,22 +75,23 @@ public final class Runtime {
                 System.exit(0);
             }
         } else {
-            MainMemory ram = new MainMemory(config.ram().name(), config.ram().size(), config.ram().accessTime());
+            MainMemory ram = new MainMemory(config.ram().name(), config.ram().size(), config.ram().accessTime(), true);
             edu.westminsteru.cmpt328.memory.Memory top = ram;
             for (Cache cache : config.caches()) {
                 edu.westminsteru.cmpt328.memory.Cache.Builder builder = edu.westminsteru.cmpt328.memory.Cache.builder();
                 builder.name(cache.name());
                 builder.accessTime(cache.accessTime());
                 builder.lineCount(cache.lines());
+                builder.timingOnly();
 
                 if (cache.mapping() == MappingAlgorithm.Direct)
                     builder.directMapping();
                 else if (cache.mapping() == MappingAlgorithm.FullyAssociative)
-                    builder.fullyAssociative(cache.replacement());
+                    builder.fullyAssociative(replacementOf(cache));
                 else if (cache.mapping() == MappingAlgorithm.SetAssociative) {
                     if (cache.ways() == Cache.Unspecified)
                         throw new RuntimeException(String.format("Cache %s: for set associative mapping, must specify number of ways (e.g. ways = 4)", cache.name()));
-                    builder.setAssociative(cache.ways(), cache.replacement());
+                    builder.setAssociative(cache.ways(), replacementOf(cache));
                 }
 
                 if (cache.accessTime() > top.getAccessTime())
@@ -106,6 +109,10 @@ public final class Runtime {
         MemorySystem.setDefault(sys);
     }
 
+    private static ReplacementPolicyProvider replacementOf(Cache cache) {
+        return cache.policy().isEmpty() ? cache.replacement() : ReplacementPolicies.forName(cache.policy());
+    }
+
     private static MemorySystemConfiguration loadMemorySystemConfigurationFromPreferences() {
         Preferences p = Preferences.userNodeForPackage(Runtime.class);
         String savedData = p.get(PREFERENCES_KEY_MEMORY_SYSTEM_CONFIGURATION, null);
@@ -135,7 +142,7 @@ public final class Runtime {
     }
 
     private static MemorySystem fromConfiguration(MemorySystemConfiguration config) {
-        var ram = new MainMemory("RAM", config.getRamSize(), config.getRamAccessTime());
+        var ram = new MainMemory("RAM", config.getRamSize(), config.getRamAccessTime(), true);
         edu.westminsteru.cmpt328.memory.Memory top = ram;
 
         int level = config.getCaches().size();
@@ -147,7 +154,8 @@ public final class Runtime {
                     .name("L" + level)
                     .drawingFrom(top)
                     .lineCount(cache.getLineCount())
-                    .accessTime(cache.getAccessTime());
+                    .accessTime(cache.getAccessTime())
+                    .timingOnly();
             if (cache.isDirect())
                 builder = builder.directMapping();
             else {
@@ -178,21 +186,15 @@ public final class Runtime {
     }
 
     public static void loadLocal(int index, int size) {
-        int addr = (topFrame().getAddress() + 4 * index);
+        long addr = (topFrame().getAddress() + 4 * index);
         addr -= addr % (4 * size);
-        if (size == 1)
-            system().getIntAt(addr).get();
-        else
-            system().getDoubleAt(addr).get();
+        system().touch(addr, 4 * size, false);
     }
 
     public static void storeLocal(int index, int size) {
-        int addr = topFrame().getAddress() + 4 * index;
+        long addr = topFrame().getAddress() + 4 * index;
         addr -= addr % (4 * size);
-        if (size == 1)
-            system().getIntAt(addr).set(0);
-        else
-            system().getDoubleAt(addr).set(0);
+        system().touch(addr, 4 * size, true);
     }
 
     public static void allocateArray(Object array) {
@@ -222,21 +224,21 @@ public final class Runtime {
     }
 
     public static void loadFromArray(Object array, int index) {
-        int addr = arrayAddresses.getOrDefault(array, -1);
+        long addr = arrayAddresses.getOrDefault(array, -1L);
         if (addr == -1)
             System.out.println("Warning: loading from array that was not allocated by this code");
         if (array instanceof byte[]
                 || array instanceof boolean[])
-            system().getByteAt(addr + index).get();
+            system().touch(addr + index, 1, false);
         else if (array instanceof short[]
                 || array instanceof int[]
                 || array instanceof float[]
                 || array instanceof char[]
                 || array instanceof Object[])
-            system().getIntAt(addr + 4 * index).get();
+            system().touch(addr + 4L * index, Bits.INT_SIZE, false);
         else if (array instanceof long[]
                 || array instanceof double[])
-            system().getDoubleAt(addr + 8 * index).get();
+            system().touch(addr + 8L * index, Bits.DOUBLE_SIZE, false);
     }
 
     public static void storeToArray(byte[] array, int index, byte value) {
@@ -285,14 +287,10 @@ public final class Runtime {
     }
 
     private static void trackStoreToArray(Object array, int index, int elementSize) {
-        int addr = arrayAddresses.getOrDefault(array, -1);
+        long addr = arrayAddresses.getOrDefault(array, -1L);
         if (addr == -1)
             System.err.println("Warning: storing to array that was not allocated by this code");
-        if (elementSize == 1)
-            system().getByteAt(addr + index).set(0);
-        else if (elementSize == 4)
-            system().getIntAt(addr + 4 * index).set(0);
-        else if (elementSize == 8)
-            system().getDoubleAt(addr + 8 * index).set(0);
+        if (elementSize == 1 || elementSize == 4 || elementSize == 8)
+            system().touch(addr + (long)elementSize * index, elementSize, true);
     }
 }
@@ -19,5 +19,7 @@ public @interface Cache {
     int lines();
     MappingAlgorithm mapping() default MappingAlgorithm.Direct;
     ReplacementAlgorithm replacement() default ReplacementAlgorithm.LRU;
+    // The name of a replacement algorithm plugged in through ReplacementPolicyProvider; overrides replacement() if given
+    String policy() default "";
     int ways() default Unspecified;
 }
@@ -13,7 +13,8 @@ public @interface RAM {
 
     int accessTime();
 
-    int size() default Bits.NUM_ADDRESSES;
+    // Up to 2^Bits.MAX_ADDRESS_SIZE bytes (e.g. size = 1L << 36 for 64 GiB); only the parts a program uses take up space
+    long size() default Bits.NUM_ADDRESSES;
 
     String name() default "RAM";
 }
@@ -0,0 +1,147 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * {@link ReplacementAlgorithm#ARC}, the adaptive replacement cache of Megiddo and Modha, applied to each set. The
+ * lines of a set are split between T1 (blocks used once since they were loaded) and T2 (blocks used again), both in
+ * LRU order, and blocks evicted from them are remembered in the ghost lists B1 and B2. A miss on a block in B1 means
+ * T1 was too small, and a miss on one in B2 that T2 was; the target size p of T1 moves accordingly.
+ *
+ * <p>Each set has as many ghost entries as it has lines, so the ghosts never take more than a second copy of the tag
+ * and list state. Nodes 0 to lineCount - 1 of {@link #lists} are the cache lines and the rest are ghost entries, with
+ * set s owning ghost nodes lineCount + s * ways onwards.</p>
+ */
+final class ArcPolicy extends ReplacementPolicy {
+
+    private static final int NONE = NodeLists.NONE;
+    private static final int T1 = 0, T2 = 1, B1 = 2, B2 = 3, FREE = 4, LISTS_PER_SET = 5;
+
+    private final int lineCount;
+    private final NodeLists lists;
+    // Which of the lists of its set each node is in
+    private final byte[] listOf;
+    // The block remembered by each ghost node (indexed by node - lineCount), and the ghost node of each remembered block
+    private final long[] ghostBlock;
+    private final IntIndex ghosts;
+    // Target size of T1 for each set
+    private final int[] target;
+
+    // About the miss being handled: whether the block was found in a ghost list (and so goes into T2), whether it was
+    // in B2, and whether the victim should be dropped without being remembered
+    private boolean toT2, wasInB2, forgetVictim;
+
+    ArcPolicy(int lineCount, int ways) {
+        super(ways);
+        this.lineCount = lineCount;
+        int sets = lineCount / ways;
+        lists = new NodeLists(2 * lineCount, sets * LISTS_PER_SET);
+        listOf = new byte[2 * lineCount];
+        ghostBlock = new long[lineCount];
+        ghosts = new IntIndex(lineCount);
+        target = new int[sets];
+        for (int set = 0; set < sets; ++set)
+            freeAllGhosts(set);
+    }
+
+    private static int list(int set, int which) {
+        return set * LISTS_PER_SET + which;
+    }
+
+    private void freeAllGhosts(int set) {
+        int free = list(set, FREE);
+        for (int node = lineCount + set * ways; node < lineCount + (set + 1) * ways; ++node) {
+            lists.addLast(free, node);
+            listOf[node] = FREE;
+        }
+    }
+
+    // Forgets the ghost entry in node
+    private void freeGhost(int set, int node) {
+        ghosts.remove(ghostBlock[node - lineCount]);
+        lists.moveToLast(list(set, listOf[node]), list(set, FREE), node);
+        listOf[node] = FREE;
+    }
+
+    @Override
+    protected void missed(int set, int base, long block) {
+        int t1 = lists.size(list(set, T1)), t2 = lists.size(list(set, T2));
+        int b1 = lists.size(list(set, B1)), b2 = lists.size(list(set, B2));
+        int ghost = ghosts.get(block);
+        toT2 = ghost != NONE;
+        wasInB2 = false;
+        forgetVictim = false;
+
+        if (ghost != NONE) {
+            // Adapt: grow T1 if the block had been evicted from it, shrink it if it had been evicted from T2
+            if (listOf[ghost] == B1) {
+                target[set] = Math.min(ways, target[set] + Math.max(b2 / b1, 1));
+            } else {
+                target[set] = Math.max(0, target[set] - Math.max(b1 / b2, 1));
+                wasInB2 = true;
+            }
+            freeGhost(set, ghost);
+        } else if (t1 + b1 == ways) {
+            if (t1 < ways)
+                freeGhost(set, lists.first(list(set, B1)));
+            else
+                forgetVictim = true;
+        } else if (t1 + t2 + b1 + b2 == 2 * ways) {
+            freeGhost(set, lists.first(list(set, B2)));
+        }
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        int t1 = lists.size(list(set, T1));
+        boolean fromT1 = forgetVictim
+                || lists.size(list(set, T2)) == 0
+                || (t1 > 0 && (t1 > target[set] || (wasInB2 && t1 == target[set])));
+        return lists.first(list(set, fromT1 ? T1 : T2)) - base;
+    }
+
+    @Override
+    protected void lineEvicted(int set, int base, int way, long block) {
+        int line = base + way;
+        int from = listOf[line];
+        lists.remove(list(set, from), line);
+        if (forgetVictim)
+            return;
+
+        int ghost = lists.first(list(set, FREE));
+        int to = (from == T1) ? B1 : B2;
+        lists.moveToLast(list(set, FREE), list(set, to), ghost);
+        listOf[ghost] = (byte)to;
+        ghostBlock[ghost - lineCount] = block;
+        ghosts.put(block, ghost);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        int to = toT2 ? T2 : T1;
+        lists.addLast(list(set, to), base + way);
+        listOf[base + way] = (byte)to;
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        int line = base + way;
+        lists.moveToLast(list(set, listOf[line]), list(set, T2), line);
+        listOf[line] = T2;
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        for (int which = B1; which <= B2; ++which)
+            for (int node = lists.first(list(set, which)); node != NONE; node = lists.next(node))
+                ghosts.remove(ghostBlock[node - lineCount]);
+        for (int which = 0; which < LISTS_PER_SET; ++which)
+            lists.clear(list(set, which));
+        freeAllGhosts(set);
+        target[set] = 0;
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        // 1 for a line in T1, 2 for one in T2
+        return listOf[line] + 1;
+    }
+}
@@ -0,0 +1,107 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteStore} backed by a single array that is allocated up front. Its size is an int, so every valid address
+ * is one too and is simply narrowed.
+ */
+final class ArrayByteStore extends ByteStore {
+
+    final byte[] data;
+
+    ArrayByteStore(int size) {
+        this.data = new byte[size];
+    }
+
+    ArrayByteStore(int[] bytes) {
+        this.data = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; ++i)
+            data[i] = (byte)(bytes[i] & 0xff);
+    }
+
+    @Override
+    long getSize() {
+        return data.length;
+    }
+
+    @Override
+    int getByteAt(long address) {
+        return ((int)data[(int)address]) & 0xff;
+    }
+
+    @Override
+    void setByteAt(long address, int value) {
+        data[(int)address] = (byte)(value & 0xff);
+    }
+
+    @Override
+    int getIntAt(long address) {
+        return getInt(data, (int)address);
+    }
+
+    @Override
+    void setIntAt(long address, int value) {
+        setInt(data, (int)address, value);
+    }
+
+    @Override
+    long getLongAt(long address) {
+        return getLong(data, (int)address);
+    }
+
+    @Override
+    void setLongAt(long address, long value) {
+        setLong(data, (int)address, value);
+    }
+
+    @Override
+    void getInts(long address, int[] dest, int offset, int length) {
+        for (int i = 0, index = (int)address; i < length; ++i, index += Bits.INT_SIZE)
+            dest[offset + i] = getInt(data, index);
+    }
+
+    @Override
+    void setInts(long address, int[] src, int offset, int length) {
+        for (int i = 0, index = (int)address; i < length; ++i, index += Bits.INT_SIZE)
+            setInt(data, index, src[offset + i]);
+    }
+
+    @Override
+    void getDoubles(long address, double[] dest, int offset, int length) {
+        for (int i = 0, index = (int)address; i < length; ++i, index += Bits.DOUBLE_SIZE)
+            dest[offset + i] = Double.longBitsToDouble(getLong(data, index));
+    }
+
+    @Override
+    void setDoubles(long address, double[] src, int offset, int length) {
+        for (int i = 0, index = (int)address; i < length; ++i, index += Bits.DOUBLE_SIZE)
+            setLong(data, index, Double.doubleToLongBits(src[offset + i]));
+    }
+
+    @Override
+    void setBytes(long address, byte[] src, int offset, int length) {
+        System.arraycopy(src, offset, data, (int)address, length);
+    }
+
+    @Override
+    void setBytes(long address, ByteBuffer src, int index, int length) {
+        src.get(index, data, (int)address, length);
+    }
+
+    @Override
+    void copyTo(long from, ByteStore dest, long destAddress, int length) {
+        dest.setBytes(destAddress, data, (int)from, length);
+    }
+
+    @Override
+    void clear() {
+        Arrays.fill(data, (byte)0);
+    }
+
+    @Override
+    void clear(long from, long to) {
+        Arrays.fill(data, (int)from, (int)to, (byte)0);
+    }
+}
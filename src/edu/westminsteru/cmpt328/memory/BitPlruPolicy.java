@@ -0,0 +1,58 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.BitSet;
+
+/**
+ * {@link ReplacementAlgorithm#BIT_PLRU}: each line has an MRU bit that is set when it is accessed; when that would set
+ * the last clear bit of a set, the other bits of the set are cleared instead. The victim is the first line whose bit is
+ * clear.
+ */
+final class BitPlruPolicy extends ReplacementPolicy {
+
+    private final BitSet mru;
+    // Number of lines of each set whose MRU bit is set (always less than ways once an access has been handled)
+    private final int[] setCount;
+
+    BitPlruPolicy(int lineCount, int ways) {
+        super(ways);
+        mru = new BitSet(lineCount);
+        setCount = new int[lineCount / ways];
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        lineAccessed(set, base, way);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        int line = base + way;
+        if (mru.get(line))
+            return;
+        if (setCount[set] + 1 == ways) {
+            // Every line has been used recently: start over with just this one
+            mru.clear(base, base + ways);
+            setCount[set] = 0;
+        }
+        mru.set(line);
+        ++setCount[set];
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        int way = mru.nextClearBit(base) - base;
+        // Only possible with a single line per set, whose bit is set by every access
+        return (way < ways) ? way : 0;
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        mru.clear(base, base + ways);
+        setCount[set] = 0;
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        return mru.get(line) ? 1 : 0;
+    }
+}
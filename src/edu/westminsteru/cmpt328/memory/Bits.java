@@ -7,14 +7,17 @@ public final class Bits {
 
     public static final int INT_SIZE = 4,
                      DOUBLE_SIZE = 8,
-                     POINTER_SIZE = 4;   // Must be at least ADDRESS_SIZE / 8
+                     POINTER_SIZE = 4;   // Pointers can hold addresses up to 32 bits wide
 
-    /** Number of bits in a memory address */
+    /** Number of bits in a memory address by default (a {@link MainMemory} can be given a wider address space, up to
+     * {@link #MAX_ADDRESS_SIZE} bits) */
     public static final int ADDRESS_SIZE = 24;
-    /** Number of possible memory addresses (i.e. maximum memory capacity in bytes) */
+    /** Number of possible memory addresses by default (i.e. default memory capacity in bytes) */
     public static final int NUM_ADDRESSES = 1 << ADDRESS_SIZE;
-    /** Largest possible memory address */
+    /** Largest possible memory address by default */
     public static final int MAX_ADDRESS = (1 << ADDRESS_SIZE) - 1;
+    /** Largest number of bits a memory address can have */
+    public static final int MAX_ADDRESS_SIZE = 48;
 
     /** Number of bytes in a memory block (same as LINE_SIZE) */
     public static final int BLOCK_SIZE = 64;
@@ -42,4 +45,9 @@ public final class Bits {
     public static int ones(int count) {
         return (1 << count) - 1;
     }
+
+    /** Returns the number of bits needed to address every byte of a memory of the given size */
+    public static int addressSizeFor(long size) {
+        return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(size - 1));
+    }
 }
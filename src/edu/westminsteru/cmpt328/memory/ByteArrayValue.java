@@ -14,7 +14,7 @@ public interface ByteArrayValue extends MemoryValue, Iterable<Integer> {
 
     int getLength();
 
-    default int getMemorySize() {
+    default long getMemorySize() {
         return getLength();
     }
 
@@ -1,72 +1,122 @@
 package edu.westminsteru.cmpt328.memory;
 
-import java.util.Arrays;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
-class ByteStore {
+/**
+ * Byte-addressed, little-endian storage behind {@link MainMemory} and {@link Cache}. {@link ArrayByteStore} keeps every
+ * byte in one array; {@link PagedByteStore} only allocates the pages that have actually been written;
+ * {@link OffHeapByteStore} keeps its bytes outside the Java heap and {@link MappedByteStore} in a mapped file. Addresses
+ * are longs so that a store can back an address space wider than 32 bits (see {@link Bits#MAX_ADDRESS_SIZE}).
+ *
+ * <p>Multi-byte values in byte arrays are read and written through little-endian views of the arrays
+ * ({@link MethodHandles#byteArrayViewVarHandle}), each of which compiles to a single load or store.</p>
+ */
+abstract class ByteStore {
 
-    final byte[] data;
+    private static final VarHandle INTS = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
 
-    ByteStore(int size) {
-        this.data = new byte[size];
+    abstract long getSize();
+
+    /** Returns the number of bytes actually allocated to hold this store's contents */
+    long getAllocatedSize() {
+        return getSize();
     }
 
-    ByteStore(int[] bytes) {
-        this.data = new byte[bytes.length];
-        for (int i = 0; i < bytes.length; ++i)
-            data[i] = (byte)(bytes[i] & 0xff);
+    abstract int getByteAt(long address);
+
+    abstract void setByteAt(long address, int value);
+
+    abstract int getIntAt(long address);
+
+    abstract void setIntAt(long address, int value);
+
+    abstract long getLongAt(long address);
+
+    abstract void setLongAt(long address, long value);
+
+    double getDoubleAt(long address) {
+        return Double.longBitsToDouble(getLongAt(address));
     }
 
-    int getSize() {
-        return data.length;
+    void setDoubleAt(long address, double value) {
+        setLongAt(address, Double.doubleToLongBits(value));
     }
 
-    int getByteAt(int address) {
-        return ((int)data[address]) & 0xff;
+    // Currently a pointer is the same as an int
+    int getPointerAt(long address) {
+        return getIntAt(address);
     }
 
-    void setByteAt(int address, int value) {
-        data[address] = (byte)(value & 0xff);
+    void setPointerAt(long address, int value) {
+        setIntAt(address, value);
     }
 
-    int getIntAt(int address) {
-        int x = 0;
-        for (int i = Bits.INT_SIZE - 1; i >= 0; --i) {
-            x = (x << 8) | (((int)data[address + i]) & 0xff);
-        }
-        return x;
+    /** Copies length ints of this store starting at address into dest starting at offset */
+    void getInts(long address, int[] dest, int offset, int length) {
+        for (int i = 0; i < length; ++i, address += Bits.INT_SIZE)
+            dest[offset + i] = getIntAt(address);
     }
 
-    void setIntAt(int address, int value) {
-        for (int i = 0; i < Bits.INT_SIZE; ++i, value >>= 8) {
-            data[address + i] = (byte)(value & 0xff);
-        }
+    /** Copies length ints of src starting at offset into this store starting at address */
+    void setInts(long address, int[] src, int offset, int length) {
+        for (int i = 0; i < length; ++i, address += Bits.INT_SIZE)
+            setIntAt(address, src[offset + i]);
     }
 
-    double getDoubleAt(int address) {
-        long x = 0;
-        for (int i = Bits.DOUBLE_SIZE - 1; i >= 0; --i) {
-            x = (x << 8) | (((long)data[address + i]) & 0xff);
-        }
-        return Double.longBitsToDouble(x);
+    /** Copies length doubles of this store starting at address into dest starting at offset */
+    void getDoubles(long address, double[] dest, int offset, int length) {
+        for (int i = 0; i < length; ++i, address += Bits.DOUBLE_SIZE)
+            dest[offset + i] = getDoubleAt(address);
     }
 
-    void setDoubleAt(int address, double value) {
-        long longValue = Double.doubleToLongBits(value);
-        for (int i = 0; i < Bits.DOUBLE_SIZE; ++i, longValue >>= 8) {
-            data[address + i] = (byte)(longValue & 0xff);
-        }
+    /** Copies length doubles of src starting at offset into this store starting at address */
+    void setDoubles(long address, double[] src, int offset, int length) {
+        for (int i = 0; i < length; ++i, address += Bits.DOUBLE_SIZE)
+            setDoubleAt(address, src[offset + i]);
     }
 
-    // Currently a pointer is the same as an int
-    int getPointerAt(int address) {
-        return getIntAt(address);
+    /** Copies length bytes of src starting at offset into this store starting at address */
+    abstract void setBytes(long address, byte[] src, int offset, int length);
+
+    /** Copies length bytes of src starting at index into this store starting at address */
+    void setBytes(long address, ByteBuffer src, int index, int length) {
+        for (int i = 0; i < length; ++i)
+            setByteAt(address + i, src.get(index + i));
     }
 
-    void setPointerAt(int address, int value) {
-        setIntAt(address, value);
+    /** Copies length bytes of this store starting at from into dest starting at destAddress */
+    void copyTo(long from, ByteStore dest, long destAddress, int length) {
+        for (int i = 0; i < length; ++i)
+            dest.setByteAt(destAddress + i, getByteAt(from + i));
     }
 
     void clear() {
-        Arrays.fill(data, (byte)0);
+        clear(0, getSize());
+    }
+
+    abstract void clear(long from, long to);
+
+    /** Releases any storage that the garbage collector would not release by itself; does nothing by default */
+    void close() {
+    }
+
+    static int getInt(byte[] data, int index) {
+        return (int)INTS.get(data, index);
+    }
+
+    static void setInt(byte[] data, int index, int value) {
+        INTS.set(data, index, value);
+    }
+
+    static long getLong(byte[] data, int index) {
+        return (long)LONGS.get(data, index);
+    }
+
+    static void setLong(byte[] data, int index, long value) {
+        LONGS.set(data, index, value);
     }
 }
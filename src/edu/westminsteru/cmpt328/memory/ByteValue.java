@@ -14,7 +14,7 @@ public interface ByteValue extends MemoryValue {
     void set(int value);
 
     @Override
-    default int getMemorySize() {
+    default long getMemorySize() {
         return 1;
     }
 
@@ -3,8 +3,8 @@ package edu.westminsteru.cmpt328.memory;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.Arrays;
-import java.util.List;
-import java.util.Random;
+import java.util.BitSet;
+import java.util.Objects;
 
 /**
  * A class representing a CPU cache of memory. A cache is itself a {@link Memory}, meaning that it can hold
@@ -16,20 +16,57 @@ import java.util.Random;
 public class Cache implements Memory {
 
     private static final int ALL_LINES = 0;
+    // Caches with at least this many lines per set use a tag index unless told otherwise by Builder.tagIndex()
+    private static final int TAG_INDEX_MIN_WAYS = 32;
+    // Line data larger than this is allocated a page at a time as lines are first filled, so that building a large
+    // cache (such as the L3 of MemorySystem.CoreI7) costs nothing until a program actually uses it
+    private static final int LAZY_DATA_MIN_SIZE = 16 * PagedByteStore.PAGE_SIZE;
+    // Seed for the random choices of replacement algorithms unless Builder.seed() says otherwise
+    private static final long DEFAULT_SEED = 328;
     private static int CACHE_COUNT = 0;
 
     private final int cacheNumber;
     private final String name;
     private final Memory source;
     private final int accessTime;
-    private final CacheLine[] lines;
+    private final int lineCount;
     private final int linesPerSet;
-    private final ReplacementAlgorithm replacementAlgorithm;
+    private final ReplacementPolicyProvider replacementAlgorithm;
+    // The replacement algorithm's bookkeeping for this cache; null for direct mapping, where there is no choice to make
+    private final ReplacementPolicy policy;
+    private final NextUse nextUse;
+    private final long seed;
     private long hits, misses;
-    private Random random = new Random();
 
     private final int offsetBits, setBits;
 
+    // Line state is kept "struct of arrays" style, indexed by line number, so that fetching and resetting lines never
+    // allocates: tags[i] is only meaningful while isMapped(i), and line i's data occupies bytes
+    // [i * LINE_SIZE, (i + 1) * LINE_SIZE) of data
+    final long[] tags;
+    private final BitSet valid, dirty;
+    private final ByteStore data;
+    private final Storage storage;
+
+    // Lines of a set are filled in order and only ever vacated all at once (by reset()), so the mapped lines of set s
+    // are always the first setFill[s] lines of the set and the next vacant one can be found without searching
+    final int[] setFill;
+    // Optional map from block number to line number, replacing the linear scan of a set when it is large
+    private final IntIndex tagIndex;
+
+    // reset() just starts a new epoch; a set whose setEpoch is older than epoch still holds the lines of an earlier run
+    // and is cleared the next time it is touched, so that resetting takes constant time however large the cache is
+    private int epoch;
+    private final int[] setEpoch;
+
+    // The block most recently accessed and the line holding it, so that runs of accesses to the same line (as in
+    // sequential array walks) skip the lookup entirely; lastBlock is NO_BLOCK when there is no such line (or when
+    // rememberLastLine is false)
+    private static final long NO_BLOCK = Long.MIN_VALUE;
+    private final boolean rememberLastLine;
+    private long lastBlock = NO_BLOCK;
+    private int lastLine, lastSet;
+
     /**
      * A class that is used to configure and create a {@link Cache}. A builder is obtained from {@link Cache#builder()} or
      * {@link Cache#cloneBuilder()}; methods of the Builder are used to specify parameter of the {@link Cache} to create.
@@ -48,8 +85,8 @@ public class Cache implements Memory {
      *     <li>{@link #drawingFrom(Memory)} &mdash; the memory this cache sits atop</li>
      *     <li>{@link #accessTime(int)} &mdash; access time for this cache in cycles</li>
      *     <li>{@link #lineCount(int)} &mdash; number of lines (each of size {@link Bits#LINE_SIZE})</li>
-     *     <li>One of {@link #directMapping()}, {@link #fullyAssociative(ReplacementAlgorithm)}, or
-     *         {@link #setAssociative(int, ReplacementAlgorithm)} &mdash; how cache lines are mapped</li>
+     *     <li>One of {@link #directMapping()}, {@link #fullyAssociative(ReplacementPolicyProvider)}, or
+     *         {@link #setAssociative(int, ReplacementPolicyProvider)} &mdash; how cache lines are mapped</li>
      *     <li>{@link #build()} &mdash; called at the end to create the {@link Cache} object as configured</li>
      * </ul>
      */
@@ -59,8 +96,15 @@ public class Cache implements Memory {
         private int accessTime = -1;
         private int lineCount = -1;
         private int linesPerSet = -1;
-        private ReplacementAlgorithm replacementAlgorithm;
+        private ReplacementPolicyProvider replacementAlgorithm;
         private String name;
+        private boolean timingOnly = false;
+        private Storage storage = Storage.HEAP;
+        private Boolean tagIndex = null;
+        private NextUse nextUse;
+        private long seed = DEFAULT_SEED;
+        private boolean rememberLastLine = true;
+        private boolean specialized = true;
 
         private Builder() {}
 
@@ -69,6 +113,12 @@ public class Cache implements Memory {
             this.lineCount = source.getLineCount();
             this.linesPerSet = source.linesPerSet;
             this.replacementAlgorithm = source.replacementAlgorithm;
+            this.timingOnly = source.isTimingOnly();
+            this.storage = source.storage;
+            this.tagIndex = source.tagIndex != null;
+            this.nextUse = source.nextUse;
+            this.seed = source.seed;
+            this.rememberLastLine = source.rememberLastLine;
         }
 
         /** Specifies which {@link Memory} the created {@link Cache} will draw from; cannot be null */
@@ -102,9 +152,9 @@ public class Cache implements Memory {
             return this;
         }
 
-        /** Specifies that the created {@link Cache} should use fully-associative mapping; a {@link ReplacementAlgorithm}
-         * must also be specified */
-        public Builder fullyAssociative(ReplacementAlgorithm replacementAlgorithm) {
+        /** Specifies that the created {@link Cache} should use fully-associative mapping; a replacement algorithm (one
+         * of the {@link ReplacementAlgorithm}s, or any other {@link ReplacementPolicyProvider}) must also be specified */
+        public Builder fullyAssociative(ReplacementPolicyProvider replacementAlgorithm) {
             if (replacementAlgorithm == null)
                 throw new IllegalArgumentException("Replacement algorithm cannot be null");
             this.linesPerSet = ALL_LINES;
@@ -112,9 +162,9 @@ public class Cache implements Memory {
             return this;
         }
 
-        /** Specifies that the created {@link Cache} should use set-associative mapping; a {@link ReplacementAlgorithm}
-         * must also be specified */
-        public Builder setAssociative(int linesPerSet, ReplacementAlgorithm replacementAlgorithm) {
+        /** Specifies that the created {@link Cache} should use set-associative mapping; a replacement algorithm (one
+         * of the {@link ReplacementAlgorithm}s, or any other {@link ReplacementPolicyProvider}) must also be specified */
+        public Builder setAssociative(int linesPerSet, ReplacementPolicyProvider replacementAlgorithm) {
             if (linesPerSet < 1)
                 throw new IllegalArgumentException("Lines per set must be positive");
             if (replacementAlgorithm == null)
@@ -124,6 +174,62 @@ public class Cache implements Memory {
             return this;
         }
 
+        /** Specifies that the created {@link Cache} should only simulate timing (optional): it tracks tags, dirty lines and
+         * replacement state but stores no data, so reads always return 0. A timing-only cache may draw from any
+         * {@link Memory}, but only other timing-only caches may draw from it. */
+        public Builder timingOnly() {
+            this.timingOnly = true;
+            return this;
+        }
+
+        /** Specifies where the created {@link Cache} keeps its line data (optional; {@link Storage#HEAP} by default). A
+         * cache kept off the Java heap should be {@link Cache#close() closed} once it is no longer needed. */
+        public Builder storage(Storage storage) {
+            if (storage == null)
+                throw new IllegalArgumentException("Storage cannot be null");
+            this.storage = storage;
+            return this;
+        }
+
+        /** Specifies whether the created {@link Cache} should find lines through a hash index of the blocks it holds
+         * rather than by searching every line of a set (optional). This makes lookups O(1) however many lines there are
+         * per set, at the cost of a little memory. By default an index is used for caches with at least 32 lines per set. */
+        public Builder tagIndex(boolean tagIndex) {
+            this.tagIndex = tagIndex;
+            return this;
+        }
+
+        /** Specifies the next uses of the recorded trace that the created {@link Cache} will replay; required for
+         * replacement algorithms that need a trace ({@link ReplacementPolicyProvider#needsTrace()}) and ignored otherwise */
+        public Builder nextUse(NextUse nextUse) {
+            this.nextUse = nextUse;
+            return this;
+        }
+
+        /** Specifies the seed for any random choices made by the created {@link Cache}'s {@link ReplacementAlgorithm}
+         * (optional). Caches built with the same seed make the same choices, so that runs are repeatable; by default
+         * every cache uses the same fixed seed. */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Specifies whether the created {@link Cache} remembers the line it last accessed, so that further accesses to
+         * that line skip the lookup (on by default). This never changes what the cache does, only how fast; turning it
+         * off is for checking exactly that. */
+        Builder rememberLastLine(boolean rememberLastLine) {
+            this.rememberLastLine = rememberLastLine;
+            return this;
+        }
+
+        /** Specifies whether the created {@link Cache} may be one of the implementations specialized for common
+         * geometries (on by default). These behave exactly like the general one, only faster; turning them off is for
+         * checking exactly that. */
+        Builder specialized(boolean specialized) {
+            this.specialized = specialized;
+            return this;
+        }
+
         /** Specifies the name of the created {@link Cache} (optional) */
         public Builder name(String name) {
             this.name = name;
@@ -144,6 +250,10 @@ public class Cache implements Memory {
                 throw new IllegalStateException("Must specify direct mapping, fully associative, or set associative");
             if (linesPerSet != 1 && replacementAlgorithm == null)
                 throw new IllegalStateException("Replacement algorithm must be specified for fully/set associative caches");
+            if (linesPerSet != 1 && replacementAlgorithm.needsTrace() && nextUse == null)
+                throw new IllegalStateException(replacementAlgorithm.name() + " replacement requires the NextUse of a trace");
+            if (!timingOnly && source.isTimingOnly())
+                throw new IllegalStateException("A cache that stores data cannot draw from a timing-only memory");
 
             if (linesPerSet == ALL_LINES)
                 linesPerSet = lineCount;
@@ -157,22 +267,50 @@ public class Cache implements Memory {
                 throw new IllegalStateException(String.format("Number of %s must be a power of 2",
                         linesPerSet == 1 ? "lines" : "sets"));
 
-            return new Cache(this);
+            // Common geometries get implementations with the lookup specialized for them
+            if (!specialized)
+                return new Cache(this);
+            else if (linesPerSet == 1)
+                return new DirectMappedCache(this);
+            else if (linesPerSet == 2 && !usesTagIndex())
+                return new TwoWayCache(this);
+            else if (linesPerSet == 4 && !usesTagIndex())
+                return new FourWayCache(this);
+            else
+                return new Cache(this);
+        }
+
+        private boolean usesTagIndex() {
+            return (tagIndex == null) ? linesPerSet >= TAG_INDEX_MIN_WAYS : tagIndex;
         }
     }
 
-    private Cache(Builder b) {
+    Cache(Builder b) {
         this.cacheNumber = CACHE_COUNT++;
         this.source = b.source;
         this.accessTime = b.accessTime;
-        this.lines = new CacheLine[b.lineCount];
-        for (int i = 0; i < lines.length; ++i)
-            this.lines[i] = CacheLine.unmapped();
-        this.linesPerSet = (b.linesPerSet == ALL_LINES) ? this.lines.length : b.linesPerSet;
+        this.lineCount = b.lineCount;
+        this.tags = new long[lineCount];
+        this.valid = new BitSet(lineCount);
+        this.dirty = new BitSet(lineCount);
+        this.storage = b.storage;
+        this.data = b.timingOnly ? null : newDataStore(lineCount * Bits.LINE_SIZE, storage);
+        this.linesPerSet = (b.linesPerSet == ALL_LINES) ? lineCount : b.linesPerSet;
         this.replacementAlgorithm = b.replacementAlgorithm;
+        this.nextUse = b.nextUse;
+        this.seed = b.seed;
+        this.rememberLastLine = b.rememberLastLine;
+        // A direct-mapped cache only needs a policy if it is not specialized, and then any will do with one-line sets
+        ReplacementPolicyProvider provider = (replacementAlgorithm == null && !b.specialized)
+                ? ReplacementAlgorithm.LRU : replacementAlgorithm;
+        this.policy = (provider == null || (linesPerSet == 1 && b.specialized)) ? null
+                : provider.newPolicy(new PolicyConfig(lineCount, linesPerSet, nextUse, seed));
         this.name = b.name;
         offsetBits = Bits.log2(getLineSize());
         setBits = Bits.log2(getSetCount());
+        this.setFill = new int[getSetCount()];
+        this.setEpoch = new int[getSetCount()];
+        this.tagIndex = b.usesTagIndex() ? new IntIndex(lineCount) : null;
     }
 
     /** Returns the {@link Memory} that this Cache draws from */
@@ -203,8 +341,14 @@ public class Cache implements Memory {
 
     /** Returns the size of this Cache, i.e. line count * line size */
     @Override
-    public int getSize() {
-        return getLineCount() * getLineSize();
+    public long getSize() {
+        return (long)getLineCount() * getLineSize();
+    }
+
+    /** Returns the number of bits in the addresses of the memory this Cache draws from */
+    @Override
+    public int getAddressSize() {
+        return source.getAddressSize();
     }
 
     @Override
@@ -216,7 +360,7 @@ public class Cache implements Memory {
 
     /** Returns the number of lines in this cache */
     public int getLineCount() {
-        return lines.length;
+        return lineCount;
     }
 
     /** Returns the number of lines per set in this Cache:
@@ -246,6 +390,11 @@ public class Cache implements Memory {
         return offsetBits;
     }
 
+    @Override
+    public boolean isTimingOnly() {
+        return data == null;
+    }
+
     /** Returns true if this cache uses direct mapping */
     public boolean isDirect() {
         return linesPerSet == 1;
@@ -253,7 +402,7 @@ public class Cache implements Memory {
 
     /** Returns true if this cache uses fully-associative mapping */
     public boolean isFullyAssociative() {
-        return linesPerSet == lines.length;
+        return linesPerSet == lineCount;
     }
 
     /** Returns true if this cache uses set-associative mapping */
@@ -262,212 +411,152 @@ public class Cache implements Memory {
     }
 
     @Override
-    public ByteValue getByte(final int address) {
-        return new ByteValue() {
-            @Override
-            public int get() {
-                CacheAddress addr = access(address, 1);
-                return lines[addr.line].getData().getByteAt(addr.offset);
-            }
-
-            @Override
-            public void set(int value) {
-                CacheAddress addr = access(address, 1);
-                lines[addr.line].getData().setByteAt(addr.offset, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    public void touch(long address, int size, boolean write) {
+        int pos = access(address, size);
+        if (write)
+            dirty.set(lineOf(pos));
     }
 
     @Override
-    public IntValue getInt(final int address) {
-        return new IntValue() {
-            @Override
-            public int get() {
-                CacheAddress addr = access(address, Bits.INT_SIZE);
-                return lines[addr.line].getData().getIntAt(addr.offset);
-            }
-
-            @Override
-            public void set(int value) {
-                CacheAddress addr = access(address, Bits.INT_SIZE);
-                lines[addr.line].getData().setIntAt(addr.offset, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    public long touchAll(int[] addresses, int[] sizes, boolean[] writes, int from, int to) {
+        Objects.checkFromToIndex(from, to, addresses.length);
+        Objects.checkFromToIndex(from, to, sizes.length);
+        Objects.checkFromToIndex(from, to, writes.length);
+        long before = getTotalAccessTime();
+        for (int i = from; i < to; ++i) {
+            int pos = access(addresses[i], sizes[i]);
+            if (writes[i])
+                dirty.set(lineOf(pos));
+        }
+        return getTotalAccessTime() - before;
     }
 
     @Override
-    public DoubleValue getDouble(final int address) {
-        return new DoubleValue() {
-            @Override
-            public double get() {
-                CacheAddress addr = access(address, Bits.DOUBLE_SIZE);
-                return lines[addr.line].getData().getDoubleAt(addr.offset);
-            }
-
-            @Override
-            public void set(double value) {
-                CacheAddress addr = access(address, Bits.DOUBLE_SIZE);
-                lines[addr.line].getData().setDoubleAt(addr.offset, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    public long touchAll(long[] addresses, int[] sizes, boolean[] writes, int from, int to) {
+        Objects.checkFromToIndex(from, to, addresses.length);
+        Objects.checkFromToIndex(from, to, sizes.length);
+        Objects.checkFromToIndex(from, to, writes.length);
+        long before = getTotalAccessTime();
+        for (int i = from; i < to; ++i) {
+            int pos = access(addresses[i], sizes[i]);
+            if (writes[i])
+                dirty.set(lineOf(pos));
+        }
+        return getTotalAccessTime() - before;
     }
 
     @Override
-    public ByteArrayValue getByteArray(final int address, final int length) {
-        return new ByteArrayValue() {
-            @Override
-            public int getLength() {
-                return length;
-            }
-
-            @Override
-            public int get(int i) {
-                CacheAddress addr = access(address + i, 1);
-                return lines[addr.line].getData().getByteAt(addr.offset);
-            }
-
-            @Override
-            public void set(int i, int value) {
-                CacheAddress addr = access(address + i, 1);
-                lines[addr.line].getData().setByteAt(addr.offset, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    public long touchAll(long[] accesses, int from, int to) {
+        Objects.checkFromToIndex(from, to, accesses.length);
+        long before = getTotalAccessTime();
+        for (int i = from; i < to; ++i) {
+            long access = accesses[i];
+            int pos = access(PackedAccess.address(access), PackedAccess.size(access));
+            if (PackedAccess.isWrite(access))
+                dirty.set(lineOf(pos));
+        }
+        return getTotalAccessTime() - before;
     }
 
     @Override
-    public IntArrayValue getIntArray(final int address, final int length) {
-        return new IntArrayValue() {
-            @Override
-            public int getLength() {
-                return length;
-            }
-
-            @Override
-            public int get(int i) {
-                CacheAddress addr = access(address + i * Bits.INT_SIZE, Bits.INT_SIZE);
-                return lines[addr.line].getData().getIntAt(addr.offset);
-            }
-
-            @Override
-            public void set(int i, int value) {
-                CacheAddress addr = access(address + i * Bits.INT_SIZE, Bits.INT_SIZE);
-                lines[addr.line].getData().setIntAt(addr.offset, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    public int readByte(long address) {
+        int pos = access(address, 1);
+        return (data == null) ? 0 : data.getByteAt(pos);
     }
 
     @Override
-    public DoubleArrayValue getDoubleArray(final int address, final int length) {
-        return new DoubleArrayValue() {
-            @Override
-            public int getLength() {
-                return length;
-            }
-
-            @Override
-            public double get(int i) {
-                CacheAddress addr = access(address + i * Bits.DOUBLE_SIZE, Bits.DOUBLE_SIZE);
-                return lines[addr.line].getData().getDoubleAt(addr.offset);
-            }
-
-            @Override
-            public void set(int i, double value) {
-                CacheAddress addr = access(address + i * Bits.DOUBLE_SIZE, Bits.DOUBLE_SIZE);
-                lines[addr.line].getData().setDoubleAt(addr.offset, value);
-            }
+    public void writeByte(long address, int value) {
+        int pos = access(address, 1);
+        if (data != null)
+            data.setByteAt(pos, value);
+        dirty.set(lineOf(pos));
+    }
 
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    @Override
+    public int readInt(long address) {
+        int pos = access(address, Bits.INT_SIZE);
+        return (data == null) ? 0 : data.getIntAt(pos);
     }
 
     @Override
-    public PointerValue getPointer(final int address) {
-        return new PointerValue() {
-            @Override
-            public int get() {
-                CacheAddress addr = access(address, Bits.POINTER_SIZE);
-                return lines[addr.line].getData().getPointerAt(addr.offset);
-            }
+    public void writeInt(long address, int value) {
+        int pos = access(address, Bits.INT_SIZE);
+        if (data != null)
+            data.setIntAt(pos, value);
+        dirty.set(lineOf(pos));
+    }
 
-            @Override
-            public void set(int value) {
-                CacheAddress addr = access(address, Bits.POINTER_SIZE);
-                lines[addr.line].getData().setPointerAt(addr.offset, value);
-            }
+    @Override
+    public double readDouble(long address) {
+        int pos = access(address, Bits.DOUBLE_SIZE);
+        return (data == null) ? 0 : data.getDoubleAt(pos);
+    }
 
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    @Override
+    public void writeDouble(long address, double value) {
+        int pos = access(address, Bits.DOUBLE_SIZE);
+        if (data != null)
+            data.setDoubleAt(pos, value);
+        dirty.set(lineOf(pos));
     }
 
-    private int offset(int address) {
-        return address & Bits.ones(offsetBits);
+    private int offset(long address) {
+        return (int)address & Bits.ones(offsetBits);
     }
 
-    private int setNumber(int address) {
-        return (address >> offsetBits) & Bits.ones(setBits);
+    private int setNumber(long address) {
+        return (int)(address >> offsetBits) & Bits.ones(setBits);
     }
 
-    private int tag(int address) {
+    private long tag(long address) {
         return address >> (offsetBits + setBits);
     }
 
-    private int addressOfLine(int lineNumber) {
-        CacheLine line = lines[lineNumber];
-        if (!line.isMapped())
+    private long addressOfLine(int lineNumber) {
+        if (!isMapped(lineNumber))
             throw new IllegalStateException("Line not mapped");
-        int tag = lines[lineNumber].getTag();
-        return (tag << (offsetBits + setBits))
-                | ((lineNumber / linesPerSet) << offsetBits);
+        return (tags[lineNumber] << (offsetBits + setBits))
+                | ((long)(lineNumber / linesPerSet) << offsetBits);
+    }
+
+    // Line number containing the given position within data
+    private int lineOf(int pos) {
+        return pos >> offsetBits;
     }
 
-    private CacheAddress access(int address, int bytes) {
+    // Simulates an access to the given address, returning the position in data where it can be found: the line number
+    // and offset within the line packed into a single int, so that the access path never allocates
+    private int access(long address, int bytes) {
+        // A negative address would give a negative block number, which must not be taken for the remembered one
+        if (address < 0)
+            throw new IllegalArgumentException("Bad memory address " + address);
+
         // Offset within line
         int lineOffset = offset(address);
         if (lineOffset + bytes > getLineSize())
             throw new IllegalStateException("Value spanning blocks");
 
+        // Same line as last time? Then it's a hit and there's no need to look for it
+        long block = address >> offsetBits;
+        if (block == lastBlock) {
+            ++hits;
+            lineAccessed(lastSet, lastSet * linesPerSet, lastLine);
+            return (lastLine << offsetBits) | lineOffset;
+        }
+
         // Check whether one of our existing lines contains this address
         int setNumber = setNumber(address);
-        int firstLineOfSet = getLinesPerSet() * setNumber;
-        int addrTag = tag(address);
-        for (int i = firstLineOfSet; i < firstLineOfSet + getLinesPerSet(); ++i) {
-            if (lines[i].isMapped() && lines[i].getTag() == addrTag) {
-                // Found it!
-                ++hits;
-                lineAccessed(setNumber, firstLineOfSet, i);
-                return new CacheAddress(i, lineOffset);
-            }
+        int firstLineOfSet = linesPerSet * setNumber;
+        if (setEpoch[setNumber] != epoch)
+            clearSet(setNumber, firstLineOfSet);
+        long addrTag = tag(address);
+        int i = findLine(setNumber, firstLineOfSet, addrTag);
+        if (i >= 0) {
+            // Found it!
+            ++hits;
+            lineAccessed(setNumber, firstLineOfSet, i);
+            remember(block, i, setNumber);
+            return (i << offsetBits) | lineOffset;
         }
 
         // We're going to have to load it - ask the mapping which line it should go into
@@ -476,70 +565,138 @@ public class Cache implements Memory {
         //print();
         //System.out.flush();
         ++misses;
+        lineMissed(setNumber, firstLineOfSet, block);
         int line = evictLine(setNumber, firstLineOfSet);
 
         fetchLine(setNumber, firstLineOfSet, line, addrTag, address & ~Bits.ones(offsetBits));
-        lineAccessed(setNumber, firstLineOfSet, line);
+        remember(block, line, setNumber);
 
         //System.out.printf("\n%s resolved miss (address=0x%06x)\n", name, address);
         //print();
         //System.out.flush();
 
-        return new CacheAddress(line, lineOffset);
+        return (line << offsetBits) | lineOffset;
     }
 
-    private List<CacheLine> set(int setNumber) {
-        return Arrays.asList(lines)
-                .subList(setNumber * linesPerSet, (setNumber + 1) * linesPerSet);
+    private void remember(long block, int line, int setNumber) {
+        if (rememberLastLine) {
+            lastBlock = block;
+            lastLine = line;
+            lastSet = setNumber;
+        }
     }
 
-    private void lineAccessed(int setNumber, int firstLineOfSet, int lineAccessed) {
-        if (!isDirect())
-            replacementAlgorithm.lineAccessed(set(setNumber), lineAccessed - firstLineOfSet);
+    // Vacates every line of a set left over from before the last reset()
+    private void clearSet(int setNumber, int firstLineOfSet) {
+        int end = firstLineOfSet + setFill[setNumber];
+        if (tagIndex != null)
+            for (int i = firstLineOfSet; i < end; ++i)
+                tagIndex.remove(blockNumber(tags[i], setNumber));
+        valid.clear(firstLineOfSet, end);
+        dirty.clear(firstLineOfSet, end);
+        setFill[setNumber] = 0;
+        setEpoch[setNumber] = epoch;
+        if (policy != null)
+            policy.setCleared(setNumber, firstLineOfSet);
+    }
+
+    // Returns true if the given line currently holds a block
+    private boolean isMapped(int lineNumber) {
+        return valid.get(lineNumber) && setEpoch[lineNumber / linesPerSet] == epoch;
+    }
+
+    // The following methods are overridden by subclasses specialized for particular geometries (see Builder.build())
+
+    // Returns the number of the line of the given set holding the given tag, or -1 if there isn't one
+    int findLine(int setNumber, int firstLineOfSet, long tag) {
+        if (tagIndex != null)
+            return tagIndex.get(blockNumber(tag, setNumber));
+
+        int end = firstLineOfSet + setFill[setNumber];
+        for (int i = firstLineOfSet; i < end; ++i)
+            if (tags[i] == tag)
+                return i;
+        return -1;
+    }
+
+    private long blockNumber(long tag, int setNumber) {
+        return (tag << setBits) | setNumber;
+    }
+
+    // Called on a hit
+    void lineAccessed(int setNumber, int firstLineOfSet, int lineAccessed) {
+        policy.lineAccessed(setNumber, firstLineOfSet, lineAccessed - firstLineOfSet);
+    }
+
+    // Called on a miss, once the block is in place (and instead of lineAccessed())
+    void lineLoaded(int setNumber, int firstLineOfSet, int lineLoaded) {
+        policy.lineLoaded(setNumber, firstLineOfSet, lineLoaded - firstLineOfSet);
+    }
+
+    // Called on a miss, before anything else
+    void lineMissed(int setNumber, int firstLineOfSet, long block) {
+        policy.missed(setNumber, firstLineOfSet, block);
+    }
+
+    // Must return a line number in [firstLineOfSet, firstLineOfSet + getLinesPerSet()); only called on full sets
+    int chooseLineToEvict(int setNumber, int firstLineOfSet) {
+        return firstLineOfSet + policy.chooseWayToEvict(setNumber, firstLineOfSet);
+    }
+
+    // Called once the line chosen by chooseLineToEvict() has been written back and vacated
+    void lineEvicted(int setNumber, int firstLineOfSet, int lineEvicted, long block) {
+        policy.lineEvicted(setNumber, firstLineOfSet, lineEvicted - firstLineOfSet, block);
     }
 
     // Must return a line number in [firstLineOfSet, firstLineOfSet + getLinesPerSet())
     private int evictLine(int setNumber, int firstLineOfSet) {
         // 1) Choose line to evict
         // Are there any unmapped lines?
-        for (int i = firstLineOfSet; i < firstLineOfSet + getLinesPerSet(); ++i)
-            if (!lines[i].isMapped())
-                return i;
+        if (setFill[setNumber] < linesPerSet)
+            return firstLineOfSet + setFill[setNumber]++;
 
-        int lineToEvict = -1;
-        if (isDirect())
-            // No choice
-            lineToEvict = firstLineOfSet;
-        else
-            lineToEvict = firstLineOfSet + replacementAlgorithm.chooseLineToEvict(set(setNumber));
+        int lineToEvict = chooseLineToEvict(setNumber, firstLineOfSet);
 
         // 2) Writeback if needed
-        if (lines[lineToEvict].isDirty()) {
-            int blockNumber = (lines[lineToEvict].getTag() << setBits) | setNumber;
+        if (dirty.get(lineToEvict)) {
+            long blockNumber = blockNumber(tags[lineToEvict], setNumber);
             // DEBUG
-            int testAddr = blockNumber * Bits.BLOCK_SIZE;
-            if (tag(testAddr) != lines[lineToEvict].getTag()
+            long testAddr = blockNumber * Bits.BLOCK_SIZE;
+            if (tag(testAddr) != tags[lineToEvict]
                     || setNumber(testAddr) != setNumber)
                 System.out.println("Miscalculated block number!");
-            source.writeback(lines[lineToEvict].getData(), blockNumber);
-            //if (!source.writeback(lines[lineToEvict].getData(), blockNumber))
+            if (data == null)
+                source.touch(blockNumber * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE, true);
+            else
+                source.writeback(data, lineToEvict * Bits.LINE_SIZE, blockNumber);
+            //if (!source.writeback(data, lineToEvict * Bits.LINE_SIZE, blockNumber))
             //    System.out.println("Cache miss on writeback!");
-            lines[lineToEvict].clean();
+            dirty.clear(lineToEvict);
         }
 
         // 3) Evict it
-        lines[lineToEvict].evict();
+        valid.clear(lineToEvict);
+        if (lineToEvict == lastLine)
+            lastBlock = NO_BLOCK;
+        if (tagIndex != null)
+            tagIndex.remove(blockNumber(tags[lineToEvict], setNumber));
+        lineEvicted(setNumber, firstLineOfSet, lineToEvict, blockNumber(tags[lineToEvict], setNumber));
 
         // Return line number
         return lineToEvict;
     }
 
-    private void fetchLine(int setNumber, int firstLineOfSet, int lineNumber, int tag, int baseAddress) {
-        lines[lineNumber] = CacheLine.map(tag);
-        source.fetch(lines[lineNumber].getData(), baseAddress >> offsetBits);
+    private void fetchLine(int setNumber, int firstLineOfSet, int lineNumber, long tag, long baseAddress) {
+        tags[lineNumber] = tag;
+        valid.set(lineNumber);
+        if (tagIndex != null)
+            tagIndex.put(blockNumber(tag, setNumber), lineNumber);
+        if (data == null)
+            source.touch(baseAddress, Bits.LINE_SIZE, false);
+        else
+            source.fetch(data, lineNumber * Bits.LINE_SIZE, baseAddress >> offsetBits);
 
-        if (!isDirect())
-            replacementAlgorithm.lineLoaded(set(setNumber), lineNumber - firstLineOfSet);
+        lineLoaded(setNumber, firstLineOfSet, lineNumber);
     }
 
     /** Returns the total number of hits that this Cache has recorded. The {@link #reset()} method resets this counter. */
@@ -573,27 +730,54 @@ public class Cache implements Memory {
      *     <li>every line of the Cache will be vacant.</li>
      * </ul>
      * <strong>This method immediately resets the cache. It does <em>not</em> write-back any dirty lines!</strong>
+     * Resetting takes constant time: each set is actually emptied the next time it is accessed.
      */
     @Override
     public void reset() {
         hits = misses = 0;
-        for (int i = 0; i < lines.length; ++i)
-            lines[i] = CacheLine.unmapped();
+        lastBlock = NO_BLOCK;
+        if (policy != null)
+            policy.reset();
+        if (++epoch == 0) {
+            // Epoch counter wrapped around, so stale sets could look current: clear everything now
+            valid.clear();
+            dirty.clear();
+            Arrays.fill(setFill, 0);
+            Arrays.fill(setEpoch, 0);
+            if (tagIndex != null)
+                tagIndex.clear();
+            for (int set = 0; policy != null && set < getSetCount(); ++set)
+                policy.setCleared(set, set * linesPerSet);
+        }
+    }
+
+    private static ByteStore newDataStore(int size, Storage storage) {
+        if (storage.isOffHeap())
+            return new OffHeapByteStore(size, storage == Storage.OFF_HEAP_SHARED);
+        return (size > LAZY_DATA_MIN_SIZE) ? new PagedByteStore(size) : new ArrayByteStore(size);
+    }
+
+    @Override
+    public void close() {
+        if (data != null)
+            data.close();
     }
 
     @Override
-    public boolean writeback(ByteStore data, int block) {
+    public boolean writeback(ByteStore data, int offset, long block) {
         long oldMisses = misses, oldHits = hits;
-        CacheAddress addr = access(block * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE);
-        System.arraycopy(data.data, 0, lines[addr.line].getData().data, 0, Bits.BLOCK_SIZE);
-        lines[addr.line].dirty();
+        int pos = access(block * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE);
+        if (this.data != null)
+            data.copyTo(offset, this.data, pos, Bits.BLOCK_SIZE);
+        dirty.set(lineOf(pos));
         return misses == oldMisses && hits == oldHits + 1;
     }
 
     @Override
-    public void fetch(ByteStore data, int block) {
-        CacheAddress addr = access(block * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE);
-        System.arraycopy(lines[addr.line].getData().data, 0, data.data, 0, Bits.BLOCK_SIZE);
+    public void fetch(ByteStore data, int offset, long block) {
+        int pos = access(block * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE);
+        if (this.data != null)
+            this.data.copyTo(pos, data, offset, Bits.BLOCK_SIZE);
     }
 
     /** In contrast to {@link #getTotalAccessTime()}, this method returns the total amount of access time at this level
@@ -635,7 +819,7 @@ public class Cache implements Memory {
      *    (<code>══════</code>) separate cache lines in different sets.</p>
      */
     public void print(PrintWriter out) {
-        // 24-bit mem addrs -> 6 hex digits
+        // e.g. 24-bit mem addrs -> 6 hex digits
         // 64-byte blocks -> 128 hex digits
         //    (4 rows of 32 in groups of 8 -> 36 per row)
         final int BYTES_PER_ROW = 16;
@@ -649,25 +833,25 @@ public class Cache implements Memory {
                      setDivider = repeat("═", TABLE_WIDTH);
         final String rowFmt = String.format("%%-%ds%%-%ds%%-%ds%%-%ds%%-%ds\n",
             LINE_NUMBER_COL_WIDTH, TAG_COL_WIDTH, DATA_COL_WIDTH, FLAGS_COL_WIDTH, META_COL_WIDTH);
-        final String tagFmt = "0x%0" + (int)Math.ceil((Bits.ADDRESS_SIZE - offsetBits - setBits) / 4.0) + "x";
+        final String tagFmt = "0x%0" + (int)Math.ceil((getAddressSize() - offsetBits - setBits) / 4.0) + "x";
         out.printf("%-" + LINE_NUMBER_COL_WIDTH + "s%-" + TAG_COL_WIDTH + "s%-" + DATA_COL_WIDTH + "s%-" + FLAGS_COL_WIDTH + "s%-" + META_COL_WIDTH + "s\n",
                 "#", "Tag", "Data", "F", "Meta");
-        for (int i = 0; i < lines.length; ++i) {
+        for (int i = 0; i < lineCount; ++i) {
             if (i % getLinesPerSet() == 0)
                 out.println(setDivider);
             else
                 out.println(lineDivider);
 
-            CacheLine line = lines[i];
             String lineNumber = "" + i;
-            if (line.isMapped()) {
-                String tag = String.format(tagFmt, line.getTag());
-                String data = dataToString(line.getData(), 0, BYTES_PER_ROW, 4);
-                String flags = "" + (line.isPresent() ? "P" : "V") + (line.isDirty() ? "D" : "");
-                String meta = "" + line.getMeta();
+            int lineStart = i * Bits.LINE_SIZE;
+            if (isMapped(i)) {
+                String tag = String.format(tagFmt, tags[i]);
+                String data = (this.data == null) ? "" : dataToString(this.data, lineStart, BYTES_PER_ROW, 4);
+                String flags = "P" + (dirty.get(i) ? "D" : "");
+                String meta = "" + ((policy == null) ? 0 : policy.getMeta(i));
                 out.printf(rowFmt, lineNumber, tag, data, flags, meta);
-                for (int off = BYTES_PER_ROW; off < getLineSize(); off += BYTES_PER_ROW) {
-                    data = dataToString(line.getData(), off, BYTES_PER_ROW, 4);
+                for (int off = BYTES_PER_ROW; this.data != null && off < getLineSize(); off += BYTES_PER_ROW) {
+                    data = dataToString(this.data, lineStart + off, BYTES_PER_ROW, 4);
                     out.printf(rowFmt, "", "", data, "", "");
                 }
             } else {
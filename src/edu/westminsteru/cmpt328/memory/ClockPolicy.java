@@ -0,0 +1,60 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.BitSet;
+
+/**
+ * {@link ReplacementAlgorithm#CLOCK}: each line has a reference bit that is set when it is accessed, and each set a
+ * hand that sweeps round its lines looking for a victim, clearing reference bits as it passes them (giving those lines
+ * a "second chance").
+ */
+final class ClockPolicy extends ReplacementPolicy {
+
+    private final BitSet referenced;
+    private final int[] hand;
+
+    ClockPolicy(int lineCount, int ways) {
+        super(ways);
+        referenced = new BitSet(lineCount);
+        hand = new int[lineCount / ways];
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        referenced.set(base + way);
+        // The hand moves past the line just filled (which is also how it follows the set as it fills up)
+        if (hand[set] == way)
+            hand[set] = (way + 1 == ways) ? 0 : way + 1;
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        referenced.set(base + way);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        int start = base + hand[set];
+        int line = referenced.nextClearBit(start);
+        if (line < base + ways) {
+            referenced.clear(start, line);
+        } else {
+            // Wrap around; if every line was referenced this comes back to (the now cleared) start
+            referenced.clear(start, base + ways);
+            line = referenced.nextClearBit(base);
+            referenced.clear(base, line);
+        }
+        hand[set] = line - base;
+        return line - base;
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        referenced.clear(base, base + ways);
+        hand[set] = 0;
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        return referenced.get(line) ? 1 : 0;
+    }
+}
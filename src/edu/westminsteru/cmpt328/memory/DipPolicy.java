@@ -0,0 +1,92 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * The adaptive insertion family of policies: {@link ReplacementAlgorithm#LIP}, {@link ReplacementAlgorithm#BIP} and
+ * {@link ReplacementAlgorithm#DIP}. Lines are ranked and evicted exactly as by {@link LruPolicy}, and a hit always
+ * makes a line the most recently used; the variants differ only in where a newly loaded line goes.
+ *
+ * <p>LIP puts every loaded line in the least recently used position, so that it is the next to go unless it gets a
+ * hit first; a working set larger than the cache then keeps most of its blocks instead of thrashing. BIP does the same
+ * except for one load in {@link #BIMODAL_PERIOD}, which is put in the most recently used position so that the cache
+ * can still move on to a new working set. DIP dedicates a few leader sets to LRU and a few to BIP and lets the rest of
+ * the cache follow whichever of the two is missing less ({@link SetDueling}, with LRU first).</p>
+ */
+final class DipPolicy extends ReplacementPolicy {
+
+    enum Insertion { LRU_POSITION, BIMODAL, DYNAMIC }
+
+    static final int BIMODAL_PERIOD = 32;
+
+    private final Insertion insertion;
+    // Loads since the last one that was put in the most recently used position under BIP (a deterministic throttle, so
+    // that runs are repeatable)
+    private int bimodalCount;
+    // DIP: chooses between LRU (first) and BIP (second) for each set; null for the other variants
+    private final SetDueling dueling;
+    // The number of lines of each set holding a block, which hold the top ranks of the set (the vacant ways stay at 0)
+    private final int[] setFill;
+
+    DipPolicy(int lineCount, int ways, Insertion insertion) {
+        super(lineCount, ways, Metadata.bitsFor(ways - 1));
+        this.insertion = insertion;
+        this.setFill = new int[lineCount / ways];
+        this.dueling = (insertion == Insertion.DYNAMIC) ? new SetDueling(lineCount / ways) : null;
+        reset();
+    }
+
+    private boolean insertsAtLru(int set) {
+        boolean bimodal = switch (insertion) {
+            case LRU_POSITION -> false;
+            case BIMODAL -> true;
+            case DYNAMIC -> dueling.usesSecond(set);
+        };
+        if (!bimodal)
+            return insertion == Insertion.LRU_POSITION;
+        if (++bimodalCount == BIMODAL_PERIOD) {
+            bimodalCount = 0;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        if (dueling != null)
+            dueling.missed(set);
+
+        // While a set is filling, the new line starts just below the lines already there, so that only those are
+        // ranked against it; in a full set it takes the rank of the line it replaced
+        int line = base + way;
+        boolean filling = setFill[set] < ways;
+        if (filling)
+            meta.set(line, ways - 1 - setFill[set]++);
+        if (!insertsAtLru(set))
+            LruPolicy.promote(meta, base, ways, line);
+        else if (!filling)
+            LruPolicy.demote(meta, base, ways, line);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        LruPolicy.promote(meta, base, ways, base + way);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return minWay(base);
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        for (int line = base; line < base + ways; ++line)
+            meta.set(line, 0);
+        setFill[set] = 0;
+    }
+
+    @Override
+    protected void reset() {
+        bimodalCount = 0;
+        if (dueling != null)
+            dueling.reset();
+    }
+}
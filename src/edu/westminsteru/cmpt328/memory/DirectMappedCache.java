@@ -0,0 +1,35 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * A {@link Cache} specialized for direct mapping: every set is a single line, so a lookup is one comparison and there
+ * is no replacement algorithm to consult.
+ */
+final class DirectMappedCache extends Cache {
+
+    DirectMappedCache(Builder b) {
+        super(b);
+    }
+
+    @Override
+    int findLine(int setNumber, int firstLineOfSet, long tag) {
+        return (setFill[setNumber] != 0 && tags[firstLineOfSet] == tag) ? firstLineOfSet : -1;
+    }
+
+    @Override
+    void lineAccessed(int setNumber, int firstLineOfSet, int lineAccessed) {}
+
+    @Override
+    void lineLoaded(int setNumber, int firstLineOfSet, int lineLoaded) {}
+
+    @Override
+    void lineMissed(int setNumber, int firstLineOfSet, long block) {}
+
+    @Override
+    int chooseLineToEvict(int setNumber, int firstLineOfSet) {
+        // No choice
+        return firstLineOfSet;
+    }
+
+    @Override
+    void lineEvicted(int setNumber, int firstLineOfSet, int lineEvicted, long block) {}
+}
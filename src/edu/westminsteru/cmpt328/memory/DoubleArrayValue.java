@@ -13,8 +13,8 @@ public interface DoubleArrayValue extends MemoryValue, Iterable<Double> {
 
     int getLength();
 
-    default int getMemorySize() {
-        return getLength() * Bits.DOUBLE_SIZE;
+    default long getMemorySize() {
+        return (long)getLength() * Bits.DOUBLE_SIZE;
     }
 
     /** Returns the i'th element of this array (a single double) */
@@ -80,7 +80,7 @@ public interface DoubleArrayValue extends MemoryValue, Iterable<Double> {
             }
 
             @Override
-            public int getAddress() {
+            public long getAddress() {
                 return DoubleArrayValue.this.getAddress() + a * Bits.DOUBLE_SIZE;
             }
         };
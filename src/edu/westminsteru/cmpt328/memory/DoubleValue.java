@@ -13,7 +13,7 @@ public interface DoubleValue extends MemoryValue {
     void set(double value);
 
     @Override
-    default int getMemorySize() {
+    default long getMemorySize() {
         return Bits.DOUBLE_SIZE;
     }
 
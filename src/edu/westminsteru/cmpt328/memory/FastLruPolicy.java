@@ -0,0 +1,94 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.Arrays;
+
+/**
+ * {@link ReplacementAlgorithm#FAST_LRU}: the same decisions as {@link LruPolicy}, but each set keeps its lines in a
+ * doubly linked list from least to most recently used, so that every hook takes constant time however many ways there
+ * are. The links are stored in arrays indexed by line number.
+ */
+final class FastLruPolicy extends ReplacementPolicy {
+
+    private static final int NONE = -1;
+
+    // prev/next link the lines of a set; head is the least recently used line of each set and tail the most
+    private final int[] prev, next;
+    private final int[] head, tail, size;
+
+    FastLruPolicy(int lineCount, int ways) {
+        super(ways);
+        prev = new int[lineCount];
+        next = new int[lineCount];
+        int sets = lineCount / ways;
+        head = new int[sets];
+        tail = new int[sets];
+        size = new int[sets];
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        int line = base + way;
+        // Until the set is full the loaded line is a vacant one; after that it is the evicted line, still listed
+        if (size[set] < ways)
+            ++size[set];
+        else
+            unlink(set, line);
+        append(set, line);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        int line = base + way;
+        if (line == tail[set])
+            // This line was already most recently accessed
+            return;
+        unlink(set, line);
+        append(set, line);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return head[set] - base;
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        head[set] = tail[set] = NONE;
+        size[set] = 0;
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        // The meta LruPolicy would show: position in the list, counted so that the most recently used line is ways - 1
+        int set = line / ways;
+        long meta = ways - size[set];
+        for (int l = head[set]; l != line; l = next[l])
+            ++meta;
+        return meta;
+    }
+
+    private void unlink(int set, int line) {
+        int p = prev[line], n = next[line];
+        if (p == NONE)
+            head[set] = n;
+        else
+            next[p] = n;
+        if (n == NONE)
+            tail[set] = p;
+        else
+            prev[n] = p;
+    }
+
+    private void append(int set, int line) {
+        int t = tail[set];
+        prev[line] = t;
+        next[line] = NONE;
+        if (t == NONE)
+            head[set] = line;
+        else
+            next[t] = line;
+        tail[set] = line;
+    }
+}
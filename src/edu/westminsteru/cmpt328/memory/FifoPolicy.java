@@ -0,0 +1,26 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * {@link ReplacementAlgorithm#FIFO}: a loaded line gets meta ways - 1 and the lines loaded before it move one step
+ * closer to eviction, exactly as for an access under {@link LruPolicy}; hits change nothing.
+ */
+final class FifoPolicy extends ReplacementPolicy {
+
+    FifoPolicy(int lineCount, int ways) {
+        super(lineCount, ways, Metadata.bitsFor(ways - 1));
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        meta.set(base + way, 0);
+        LruPolicy.promote(meta, base, ways, base + way);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {}
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return minWay(base);
+    }
+}
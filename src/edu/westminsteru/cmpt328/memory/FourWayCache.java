@@ -0,0 +1,25 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * A {@link Cache} specialized for 4-way set-associative mapping, checking the lines of a set without a loop.
+ */
+final class FourWayCache extends Cache {
+
+    FourWayCache(Builder b) {
+        super(b);
+    }
+
+    @Override
+    int findLine(int setNumber, int firstLineOfSet, long tag) {
+        int fill = setFill[setNumber];
+        if (fill > 0 && tags[firstLineOfSet] == tag)
+            return firstLineOfSet;
+        if (fill > 1 && tags[firstLineOfSet + 1] == tag)
+            return firstLineOfSet + 1;
+        if (fill > 2 && tags[firstLineOfSet + 2] == tag)
+            return firstLineOfSet + 2;
+        if (fill > 3 && tags[firstLineOfSet + 3] == tag)
+            return firstLineOfSet + 3;
+        return -1;
+    }
+}
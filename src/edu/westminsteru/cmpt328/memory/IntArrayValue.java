@@ -13,8 +13,8 @@ public interface IntArrayValue extends MemoryValue, Iterable<Integer> {
 
     int getLength();
 
-    default int getMemorySize() {
-        return getLength() * Bits.INT_SIZE;
+    default long getMemorySize() {
+        return (long)getLength() * Bits.INT_SIZE;
     }
 
     /** Gets the i'th element of this array, a single int */
@@ -80,7 +80,7 @@ public interface IntArrayValue extends MemoryValue, Iterable<Integer> {
             }
 
             @Override
-            public int getAddress() {
+            public long getAddress() {
                 return IntArrayValue.this.getAddress() + a * Bits.INT_SIZE;
             }
         };
@@ -0,0 +1,107 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative long keys to non-negative int values using open addressing with linear probing, so that
+ * lookups, insertions and removals are O(1) on average and never allocate. {@link Cache} uses one to find which line
+ * holds a block without scanning a whole set; the keys are longs so that block numbers of any address width fit.
+ */
+final class IntIndex {
+
+    private static final int EMPTY = -1;
+    /** The most entries an index can be made to hold (its table then has 2<sup>30</sup> slots) */
+    static final int MAX_CAPACITY = 1 << 28;
+
+    private final long[] keys;
+    private final int[] values;
+    private final int mask, shift;
+    private int size;
+
+    /** Creates an index able to hold up to capacity entries */
+    IntIndex(int capacity) {
+        if (capacity > MAX_CAPACITY)
+            throw new IllegalArgumentException("An index cannot hold more than " + MAX_CAPACITY + " entries");
+        // Keep the table at most half full so that probe sequences stay short
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 1)) << 2;
+        keys = new long[tableSize];
+        values = new int[tableSize];
+        Arrays.fill(keys, EMPTY);
+        mask = tableSize - 1;
+        shift = Long.SIZE - Bits.log2(tableSize);
+    }
+
+    private int slot(long key) {
+        // Fibonacci hashing spreads consecutive block numbers across the table
+        return (int)((key * 0x9e3779b97f4a7c15L) >>> shift);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Returns the number of entries this index can hold while staying at most half full */
+    int capacity() {
+        return (mask + 1) >>> 1;
+    }
+
+    /** Returns a copy of this index with twice the capacity */
+    IntIndex grown() {
+        IntIndex grown = new IntIndex(capacity());
+        for (int i = 0; i <= mask; ++i)
+            if (keys[i] != EMPTY)
+                grown.put(keys[i], values[i]);
+        return grown;
+    }
+
+    /** Returns the value for key, or -1 if key is not present */
+    int get(long key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key)
+                return values[i];
+            if (k == EMPTY)
+                return -1;
+        }
+    }
+
+    /** Associates key with value, replacing any value already present */
+    void put(long key, int value) {
+        int i = slot(key);
+        while (keys[i] != EMPTY && keys[i] != key)
+            i = (i + 1) & mask;
+        if (keys[i] == EMPTY)
+            ++size;
+        keys[i] = key;
+        values[i] = value;
+    }
+
+    /** Removes key (if present) */
+    void remove(long key) {
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == EMPTY)
+                return;
+            i = (i + 1) & mask;
+        }
+
+        // Shift later entries of the probe sequence back so that no tombstones are needed
+        for (int j = (i + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = EMPTY;
+        --size;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+}
@@ -14,7 +14,7 @@ public interface IntValue extends MemoryValue {
     void set(int value);
 
     @Override
-    default int getMemorySize() {
+    default long getMemorySize() {
         return Bits.INT_SIZE;
     }
 
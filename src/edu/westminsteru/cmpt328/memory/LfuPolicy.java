@@ -0,0 +1,31 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * {@link ReplacementAlgorithm#LFU}: a line's meta counts its accesses since it was loaded, saturating at
+ * 2<sup>32</sup> - 1.
+ */
+final class LfuPolicy extends ReplacementPolicy {
+
+    static final int COUNTER_BITS = 32;
+
+    LfuPolicy(int lineCount, int ways) {
+        super(lineCount, ways, COUNTER_BITS);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        meta.set(base + way, 1);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        long count = meta.get(base + way);
+        if (count < meta.max())
+            meta.set(base + way, count + 1);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return minWay(base);
+    }
+}
@@ -0,0 +1,198 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.BitSet;
+
+/**
+ * {@link ReplacementAlgorithm#LIRS}, the low inter-reference recency set policy of Jiang and Zhang, applied to each set.
+ * Most lines of a set hold LIR blocks, which have been reused after a short interval; the rest ({@link #hirLines(int)}
+ * of them) hold HIR blocks, and only HIR blocks are evicted, in FIFO order (queue Q). The recency stack S orders LIR
+ * blocks, resident HIR blocks and recently evicted HIR blocks (ghosts) by last access, and a HIR block accessed again
+ * while still in S has shown a short reuse interval and swaps places with the LIR block at the bottom of S.
+ *
+ * <p>Each set keeps at most as many ghosts as it has lines; when another is needed the oldest is forgotten. Nodes 0 to
+ * lineCount - 1 are the cache lines and the rest are ghost entries, with set s owning ghost nodes lineCount + s * ways
+ * onwards.</p>
+ */
+final class LirsPolicy extends ReplacementPolicy {
+
+    private static final int NONE = NodeLists.NONE;
+    private static final byte LIR = 0, HIR = 1, GHOST = 2;
+    // Lists of the queues group: Q (resident HIR blocks), G (ghosts, oldest first) and FREE (unused ghost nodes)
+    private static final int Q = 0, G = 1, FREE = 2, QUEUES_PER_SET = 3;
+
+    private final int lineCount;
+    private final int lirLines;
+    // stack has one list (S) per set; queues has the three lists above per set. A node can be in one of each.
+    private final NodeLists stack, queues;
+    private final byte[] status;
+    private final BitSet inStack;
+    private final int[] lirCount;
+    private final long[] ghostBlock;
+    private final IntIndex ghosts;
+
+    // The ghost node of the block whose miss is being handled, or NONE
+    private int loadingGhost = NONE;
+
+    LirsPolicy(int lineCount, int ways) {
+        super(ways);
+        this.lineCount = lineCount;
+        this.lirLines = ways - hirLines(ways);
+        int sets = lineCount / ways;
+        stack = new NodeLists(2 * lineCount, sets);
+        queues = new NodeLists(2 * lineCount, sets * QUEUES_PER_SET);
+        status = new byte[2 * lineCount];
+        inStack = new BitSet(2 * lineCount);
+        lirCount = new int[sets];
+        ghostBlock = new long[lineCount];
+        ghosts = new IntIndex(lineCount);
+        for (int set = 0; set < sets; ++set)
+            freeAllGhosts(set);
+    }
+
+    /** The number of lines of a set reserved for HIR blocks: 1%, as suggested by the authors, but at least one */
+    static int hirLines(int ways) {
+        return Math.max(1, ways / 100);
+    }
+
+    private static int queue(int set, int which) {
+        return set * QUEUES_PER_SET + which;
+    }
+
+    private void freeAllGhosts(int set) {
+        for (int node = lineCount + set * ways; node < lineCount + (set + 1) * ways; ++node)
+            queues.addLast(queue(set, FREE), node);
+    }
+
+    // Forgets the ghost in node, which is in both S and G
+    private void freeGhost(int set, int node) {
+        ghosts.remove(ghostBlock[node - lineCount]);
+        stack.remove(set, node);
+        inStack.clear(node);
+        queues.moveToLast(queue(set, G), queue(set, FREE), node);
+    }
+
+    private void pushOnStack(int set, int node) {
+        if (inStack.get(node)) {
+            stack.moveToLast(set, set, node);
+        } else {
+            stack.addLast(set, node);
+            inStack.set(node);
+        }
+    }
+
+    // Turns the LIR block at the bottom of S into a resident HIR block, then prunes S
+    private void demoteBottom(int set) {
+        int bottom = stack.first(set);
+        stack.remove(set, bottom);
+        inStack.clear(bottom);
+        status[bottom] = HIR;
+        queues.addLast(queue(set, Q), bottom);
+        prune(set);
+    }
+
+    // Removes blocks from the bottom of S until it is a LIR block, forgetting ghosts altogether
+    private void prune(int set) {
+        for (int bottom = stack.first(set); bottom != NONE && status[bottom] != LIR; bottom = stack.first(set)) {
+            if (status[bottom] == GHOST) {
+                freeGhost(set, bottom);
+            } else {
+                stack.remove(set, bottom);
+                inStack.clear(bottom);
+            }
+        }
+    }
+
+    @Override
+    protected void missed(int set, int base, long block) {
+        loadingGhost = ghosts.get(block);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return queues.first(queue(set, Q)) - base;
+    }
+
+    @Override
+    protected void lineEvicted(int set, int base, int way, long block) {
+        int line = base + way;
+        queues.remove(queue(set, Q), line);
+        if (!inStack.get(line))
+            return;
+
+        // The block stays in S, as a ghost in place of the line
+        if (queues.size(queue(set, FREE)) == 0) {
+            int oldest = queues.first(queue(set, G));
+            if (oldest == loadingGhost)
+                loadingGhost = NONE;
+            freeGhost(set, oldest);
+        }
+        int ghost = queues.first(queue(set, FREE));
+        queues.moveToLast(queue(set, FREE), queue(set, G), ghost);
+        stack.replace(set, line, ghost);
+        inStack.clear(line);
+        inStack.set(ghost);
+        status[ghost] = GHOST;
+        ghostBlock[ghost - lineCount] = block;
+        ghosts.put(block, ghost);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        int line = base + way;
+        if (lirCount[set] < lirLines) {
+            // Until there are enough LIR blocks every block loaded becomes one
+            status[line] = LIR;
+            ++lirCount[set];
+            pushOnStack(set, line);
+        } else if (loadingGhost != NONE) {
+            // Reused while still in S: a short reuse interval, so the block becomes LIR
+            freeGhost(set, loadingGhost);
+            status[line] = LIR;
+            pushOnStack(set, line);
+            demoteBottom(set);
+        } else {
+            status[line] = HIR;
+            pushOnStack(set, line);
+            queues.addLast(queue(set, Q), line);
+        }
+        loadingGhost = NONE;
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        int line = base + way;
+        if (status[line] == LIR) {
+            boolean wasBottom = stack.first(set) == line;
+            pushOnStack(set, line);
+            if (wasBottom)
+                prune(set);
+        } else if (inStack.get(line)) {
+            queues.remove(queue(set, Q), line);
+            status[line] = LIR;
+            pushOnStack(set, line);
+            demoteBottom(set);
+        } else {
+            pushOnStack(set, line);
+            queues.moveToLast(queue(set, Q), queue(set, Q), line);
+        }
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        for (int node = queues.first(queue(set, G)); node != NONE; node = queues.next(node))
+            ghosts.remove(ghostBlock[node - lineCount]);
+        stack.clear(set);
+        for (int which = 0; which < QUEUES_PER_SET; ++which)
+            queues.clear(queue(set, which));
+        inStack.clear(base, base + ways);
+        inStack.clear(lineCount + base, lineCount + base + ways);
+        freeAllGhosts(set);
+        lirCount[set] = 0;
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        // 1 for a LIR block, 0 for a (resident) HIR block
+        return (status[line] == LIR) ? 1 : 0;
+    }
+}
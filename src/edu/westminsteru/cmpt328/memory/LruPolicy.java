@@ -0,0 +1,56 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * {@link ReplacementAlgorithm#LRU}: the lines of a full set have metas 0 (least recently used) to ways - 1 (most
+ * recently used), so an access renumbers the lines that were used after the accessed one.
+ */
+final class LruPolicy extends ReplacementPolicy {
+
+    LruPolicy(int lineCount, int ways) {
+        super(lineCount, ways, Metadata.bitsFor(ways - 1));
+    }
+
+    /** Makes line the most recently used of its set, given the meta it had until now */
+    static void promote(Metadata meta, int base, int ways, int line) {
+        long oldMeta = meta.get(line);
+        if (oldMeta + 1 == ways)
+            // This line was already most recently accessed
+            return;
+        for (int l = base; l < base + ways; ++l) {
+            long value = meta.get(l);
+            if (value > oldMeta)
+                meta.set(l, value - 1);
+        }
+        meta.set(line, ways - 1);
+    }
+
+    /** Makes line the least recently used of its set, given the meta it had until now */
+    static void demote(Metadata meta, int base, int ways, int line) {
+        long oldMeta = meta.get(line);
+        if (oldMeta == 0)
+            return;
+        for (int l = base; l < base + ways; ++l) {
+            long value = meta.get(l);
+            if (value < oldMeta)
+                meta.set(l, value + 1);
+        }
+        meta.set(line, 0);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        // A newly loaded line starts below every other line and then moves to the top, like any other access
+        meta.set(base + way, 0);
+        promote(meta, base, ways, base + way);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        promote(meta, base, ways, base + way);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return minWay(base);
+    }
+}
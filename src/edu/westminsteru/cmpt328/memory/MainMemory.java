@@ -1,7 +1,12 @@
 package edu.westminsteru.cmpt328.memory;
 
+import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Objects;
 
 /**
  * A class representing the main memory (i.e. RAM) of a computer. This class implements {@link Memory}, so it is possible
@@ -9,13 +14,18 @@ import java.io.PrintWriter;
  * <code>allocate</code> methods of {@link MemorySystem} instead.
  *
  * The default size of a {@link MainMemory} is {@link Bits#NUM_ADDRESSES} bytes, the largest possible in this simulated
- * system (currently 16 MiB).
+ * system by default (currently 16 MiB), but a memory can be given a wider address space of up to
+ * {@link Bits#MAX_ADDRESS_SIZE} bits with {@link #withAddressSize(String, int, int)}. Its contents are kept in pages
+ * that are only allocated when first written, so a large memory costs little more than the parts a program actually
+ * uses. Those contents are normally kept on the Java heap, but can be kept off it instead (see {@link Storage}) or
+ * mapped from a file holding a memory image (see {@link #mapFile(String, Path, long, int, boolean)}).
  */
 public class MainMemory implements Memory {
 
     private static int MAIN_MEMORY_COUNT = 0;
 
     private final int accessTime;
+    private final long size;
     private final ByteStore data;
     private int mainMemoryNumber;
     private String name;
@@ -24,22 +34,68 @@ public class MainMemory implements Memory {
     /**
      * Creates a MainMemory with the given name, size in bytes, and access time in cycles
      */
-    public MainMemory(String name, int size, int accessTime) {
+    public MainMemory(String name, long size, int accessTime) {
         this(size, accessTime);
         this.name = name;
     }
 
+    /**
+     * Creates a MainMemory with the given name, size in bytes, and access time in cycles. If timingOnly is true, the
+     * memory stores no data and only counts accesses (see {@link Memory#isTimingOnly()}); only timing-only
+     * {@link Cache}s can draw from it.
+     */
+    public MainMemory(String name, long size, int accessTime, boolean timingOnly) {
+        this(size, accessTime, timingOnly);
+        this.name = name;
+    }
+
+    /**
+     * Creates a MainMemory with the given name, size in bytes, and access time in cycles that keeps its contents as
+     * given by storage. A memory kept off the Java heap should be {@link #close() closed} once it is no longer needed.
+     */
+    public MainMemory(String name, long size, int accessTime, Storage storage) {
+        this(size, accessTime, false, storage);
+        this.name = name;
+    }
+
     /**
      * Creates a MainMemory with the given size in bytes and access time in cycles
      */
-    public MainMemory(int size, int accessTime) {
+    public MainMemory(long size, int accessTime) {
+        this(size, accessTime, false);
+    }
+
+    private MainMemory(long size, int accessTime, boolean timingOnly) {
+        this(size, accessTime, timingOnly, Storage.HEAP);
+    }
+
+    private MainMemory(long size, int accessTime, boolean timingOnly, Storage storage) {
+        this(size, accessTime, timingOnly ? null : newStore(checkSize(size), storage));
+    }
+
+    private MainMemory(long size, int accessTime, ByteStore data) {
         mainMemoryNumber = MAIN_MEMORY_COUNT++;
-        if (size > Bits.MAX_ADDRESS + 1)
-            throw new IllegalArgumentException("Size too large (cannot be more than " + (Bits.MAX_ADDRESS + 1));
-        data = new ByteStore(size);
+        this.size = checkSize(size);
+        this.data = data;
         this.accessTime = accessTime;
     }
 
+    private static long checkSize(long size) {
+        if (size < 1)
+            throw new IllegalArgumentException("Size must be positive");
+        if (size > 1L << Bits.MAX_ADDRESS_SIZE)
+            throw new IllegalArgumentException("Size too large (cannot be more than " + (1L << Bits.MAX_ADDRESS_SIZE) + ")");
+        return size;
+    }
+
+    private static ByteStore newStore(long size, Storage storage) {
+        if (storage == null)
+            throw new IllegalArgumentException("Storage cannot be null");
+        return storage.isOffHeap()
+                ? new OffHeapByteStore(size, storage == Storage.OFF_HEAP_SHARED)
+                : new PagedByteStore(size);
+    }
+
     /**
      * Creates a MainMemory with the given name and access time in cycles. The default size is used (full capacity).
      */
@@ -54,6 +110,43 @@ public class MainMemory implements Memory {
         this(Bits.NUM_ADDRESSES, accessTime);
     }
 
+    /**
+     * Creates a MainMemory with the given name and access time in cycles that fills an address space of the given
+     * number of bits (from 1 to {@link Bits#MAX_ADDRESS_SIZE}), e.g. 32 for 4 GiB. Only the pages that are actually
+     * written take up space, however wide the address space is.
+     */
+    public static MainMemory withAddressSize(String name, int addressSize, int accessTime) {
+        if (addressSize < 1 || addressSize > Bits.MAX_ADDRESS_SIZE)
+            throw new IllegalArgumentException("Address size must be 1 to " + Bits.MAX_ADDRESS_SIZE + " bits");
+        return new MainMemory(name, 1L << addressSize, accessTime);
+    }
+
+    /**
+     * Creates a MainMemory with the given name and access time in cycles whose contents are the first size bytes of a
+     * memory image file, mapped into memory rather than read: each page of the file is only loaded when first touched.
+     *
+     * <p>If readWrite is true, the file is created or extended to size bytes if need be, every write goes to the file,
+     * and {@link #close()} makes sure that the file holds the final contents of the memory. Otherwise the memory is
+     * copy-on-write: the file must hold at least size bytes and is never changed (though it must be writable, as
+     * Java only maps files privately through a writable channel). Neither kind is filled with zeros by
+     * {@link #reset()}: a read-write memory keeps its contents, which are those of the file, and a copy-on-write one
+     * returns to the file's contents.</p>
+     */
+    public static MainMemory mapFile(String name, Path file, long size, int accessTime, boolean readWrite)
+            throws IOException {
+        MainMemory memory = new MainMemory(size, accessTime, new MappedByteStore(file, checkSize(size), readWrite));
+        memory.name = name;
+        return memory;
+    }
+
+    /**
+     * Creates a MainMemory with the given name and access time in cycles whose contents are the whole of an existing
+     * memory image file, as described in {@link #mapFile(String, Path, long, int, boolean)}
+     */
+    public static MainMemory mapFile(String name, Path file, int accessTime, boolean readWrite) throws IOException {
+        return mapFile(name, file, Files.size(file), accessTime, readWrite);
+    }
+
     @Override
     public String getName() {
         return (name == null)
@@ -61,14 +154,22 @@ public class MainMemory implements Memory {
                 : name;
     }
 
-    private void checkAddressRange(int base, int bytes) {
+    private void checkAddressRange(long base, long bytes) {
         checkAddress(base);
         checkAddress(base + bytes - 1);
     }
 
-    private void checkAddress(int address) {
-        if (address < 0 || address >= data.getSize())
-            throw new IllegalArgumentException(String.format("Bad memory address %d in memory of size %d", address, data.getSize()));
+    // Checks a bulk copy of length values of the given size between an array of arrayLength values (starting at offset)
+    // and this memory (starting at address); an empty copy may start anywhere
+    private void checkBulkRange(long address, int arrayLength, int offset, int length, int size) {
+        Objects.checkFromIndexSize(offset, length, arrayLength);
+        if (length > 0)
+            checkAddressRange(address, (long)length * size);
+    }
+
+    private void checkAddress(long address) {
+        if (address < 0 || address >= size)
+            throw new IllegalArgumentException(String.format("Bad memory address %d in memory of size %d", address, size));
     }
 
     @Override
@@ -77,220 +178,176 @@ public class MainMemory implements Memory {
     }
 
     @Override
-    public int getSize() {
-        return data.getSize();
+    public long getSize() {
+        return size;
+    }
+
+    @Override
+    public boolean isTimingOnly() {
+        return data == null;
     }
 
+    /**
+     * Resets this memory as described in {@link Memory#reset()}. Resetting takes time proportional to the number of
+     * pages written since the memory was created or last reset, which are released; every other page already reads as
+     * zero. A memory mapped from a file is not filled with zeros (see
+     * {@link #mapFile(String, Path, long, int, boolean)}): a copy-on-write one reads the pages written since it was
+     * mapped or last reset back from the file, taking time proportional to their number, and a read-write one keeps
+     * its contents, taking constant time.
+     */
     @Override
     public void reset() {
-        data.clear();
         accessCount = 0;
+        if (data != null)
+            data.clear();
     }
 
-    @Override
-    public ByteValue getByte(final int address) {
-        checkAddress(address);
+    /** Returns the number of bytes of memory that are actually allocated to hold this memory's contents */
+    public long getAllocatedSize() {
+        return (data == null) ? 0 : data.getAllocatedSize();
+    }
 
-        return new ByteValue() {
-            @Override
-            public int get() {
-                ++accessCount;
-                return data.getByteAt(address);
-            }
+    @Override
+    public void close() {
+        if (data != null)
+            data.close();
+    }
 
-            @Override
-            public void set(int value) {
-                ++accessCount;
-                data.setByteAt(address, value);
-            }
+    @Override
+    public void touch(long address, int size, boolean write) {
+        checkAddressRange(address, size);
+        ++accessCount;
+    }
 
-            @Override
-            public int getMemorySize() {
-                return 1;
-            }
+    @Override
+    public int readByte(long address) {
+        checkAddress(address);
+        ++accessCount;
+        return (data == null) ? 0 : data.getByteAt(address);
+    }
 
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    @Override
+    public void writeByte(long address, int value) {
+        checkAddress(address);
+        ++accessCount;
+        if (data != null)
+            data.setByteAt(address, value);
     }
 
     @Override
-    public IntValue getInt(final int address) {
+    public int readInt(long address) {
         checkAddressRange(address, Bits.INT_SIZE);
+        ++accessCount;
+        return (data == null) ? 0 : data.getIntAt(address);
+    }
 
-        return new IntValue() {
-            @Override
-            public int get() {
-                ++accessCount;
-                return data.getIntAt(address);
-            }
-
-            @Override
-            public int getMemorySize() {
-                return Bits.INT_SIZE;
-            }
-
-            @Override
-            public void set(int value) {
-                ++accessCount;
-                data.setIntAt(address, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    @Override
+    public void writeInt(long address, int value) {
+        checkAddressRange(address, Bits.INT_SIZE);
+        ++accessCount;
+        if (data != null)
+            data.setIntAt(address, value);
     }
 
     @Override
-    public DoubleValue getDouble(final int address) {
+    public double readDouble(long address) {
         checkAddressRange(address, Bits.DOUBLE_SIZE);
-
-        return new DoubleValue() {
-
-            @Override
-            public double get() {
-                ++accessCount;
-                return data.getDoubleAt(address);
-            }
-
-            @Override
-            public int getMemorySize() {
-                return Bits.DOUBLE_SIZE;
-            }
-
-            @Override
-            public void set(double value) {
-                ++accessCount;
-                data.setDoubleAt(address, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+        ++accessCount;
+        return (data == null) ? 0 : data.getDoubleAt(address);
     }
 
     @Override
-    public ByteArrayValue getByteArray(final int address, final int length) {
-        checkAddressRange(address, length);
+    public void writeDouble(long address, double value) {
+        checkAddressRange(address, Bits.DOUBLE_SIZE);
+        ++accessCount;
+        if (data != null)
+            data.setDoubleAt(address, value);
+    }
 
-        return new ByteArrayValue() {
-            @Override
-            public int getLength() {
-                return length;
-            }
+    /**
+     * Reads length consecutive ints starting at the given address into values starting at offset, counting an access
+     * for each as {@link #readInt(long)} would but copying them all at once. Useful for inspecting the contents of a
+     * large array without going through the caches.
+     */
+    public void readInts(long address, int[] values, int offset, int length) {
+        checkBulkRange(address, values.length, offset, length, Bits.INT_SIZE);
+        if (data != null)
+            data.getInts(address, values, offset, length);
+        else
+            Arrays.fill(values, offset, offset + length, 0);
+        accessCount += length;
+    }
 
-            @Override
-            public int get(int i) {
-                ++accessCount;
-                return data.getByteAt(address + i);
-            }
+    /**
+     * Writes length ints of values starting at offset to consecutive addresses starting at the given one, counting an
+     * access for each as {@link #writeInt(long, int)} would but copying them all at once. Useful for loading a large
+     * array into memory without going through the caches.
+     */
+    public void writeInts(long address, int[] values, int offset, int length) {
+        checkBulkRange(address, values.length, offset, length, Bits.INT_SIZE);
+        if (data != null)
+            data.setInts(address, values, offset, length);
+        accessCount += length;
+    }
 
-            @Override
-            public void set(int i, int value) {
-                ++accessCount;
-                data.setByteAt(address + i, value);
-            }
+    /** Reads length consecutive doubles into values starting at offset, as {@link #readInts} does for ints */
+    public void readDoubles(long address, double[] values, int offset, int length) {
+        checkBulkRange(address, values.length, offset, length, Bits.DOUBLE_SIZE);
+        if (data != null)
+            data.getDoubles(address, values, offset, length);
+        else
+            Arrays.fill(values, offset, offset + length, 0);
+        accessCount += length;
+    }
 
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    /** Writes length doubles of values starting at offset, as {@link #writeInts} does for ints */
+    public void writeDoubles(long address, double[] values, int offset, int length) {
+        checkBulkRange(address, values.length, offset, length, Bits.DOUBLE_SIZE);
+        if (data != null)
+            data.setDoubles(address, values, offset, length);
+        accessCount += length;
     }
 
     @Override
-    public IntArrayValue getIntArray(final int address, final int length) {
-        checkAddressRange(address, length * Bits.INT_SIZE);
-
-        return new IntArrayValue() {
-
-            @Override
-            public int getLength() {
-                return length;
-            }
-
-            @Override
-            public int get(int i) {
-                ++accessCount;
-                return data.getIntAt(address + i * Bits.INT_SIZE);
-            }
-
-            @Override
-            public void set(int i, int value) {
-                ++accessCount;
-                data.setIntAt(address + i * Bits.INT_SIZE, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    public ByteValue getByte(long address) {
+        checkAddress(address);
+        return Memory.super.getByte(address);
     }
 
     @Override
-    public DoubleArrayValue getDoubleArray(final int address, final int length) {
-        checkAddressRange(address, length * Bits.DOUBLE_SIZE);
-
-        return new DoubleArrayValue() {
-
-            @Override
-            public int getLength() {
-                return length;
-            }
+    public IntValue getInt(long address) {
+        checkAddressRange(address, Bits.INT_SIZE);
+        return Memory.super.getInt(address);
+    }
 
-            @Override
-            public double get(int i) {
-                ++accessCount;
-                return data.getDoubleAt(address + i * Bits.DOUBLE_SIZE);
-            }
+    @Override
+    public DoubleValue getDouble(long address) {
+        checkAddressRange(address, Bits.DOUBLE_SIZE);
+        return Memory.super.getDouble(address);
+    }
 
-            @Override
-            public void set(int i, double value) {
-                ++accessCount;
-                data.setDoubleAt(address + i * Bits.DOUBLE_SIZE, value);
-            }
+    @Override
+    public ByteArrayValue getByteArray(long address, int length) {
+        checkAddressRange(address, length);
+        return Memory.super.getByteArray(address, length);
+    }
 
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+    @Override
+    public IntArrayValue getIntArray(long address, int length) {
+        checkAddressRange(address, (long)length * Bits.INT_SIZE);
+        return Memory.super.getIntArray(address, length);
     }
 
     @Override
-    public PointerValue getPointer(int address) {
+    public DoubleArrayValue getDoubleArray(long address, int length) {
+        checkAddressRange(address, (long)length * Bits.DOUBLE_SIZE);
+        return Memory.super.getDoubleArray(address, length);
+    }
 
+    @Override
+    public PointerValue getPointer(long address) {
         checkAddressRange(address, Bits.POINTER_SIZE);
-        return new PointerValue() {
-            @Override
-            public int get() {
-                ++accessCount;
-                return data.getPointerAt(address);
-            }
-
-            @Override
-            public int getMemorySize() {
-                return Bits.POINTER_SIZE;
-            }
-
-            @Override
-            public void set(int value) {
-                ++accessCount;
-                data.setPointerAt(address, value);
-            }
-
-            @Override
-            public int getAddress() {
-                return address;
-            }
-        };
+        return Memory.super.getPointer(address);
     }
 
     @Override
@@ -299,16 +356,18 @@ public class MainMemory implements Memory {
     }
 
     @Override
-    public boolean writeback(ByteStore data, int block) {
+    public boolean writeback(ByteStore data, int offset, long block) {
         ++accessCount;
-        System.arraycopy(data.data, 0, this.data.data, block * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE);
+        if (this.data != null)
+            data.copyTo(offset, this.data, block * Bits.BLOCK_SIZE, Bits.BLOCK_SIZE);
         return true;
     }
 
     @Override
-    public void fetch(ByteStore data, int block) {
+    public void fetch(ByteStore data, int offset, long block) {
         ++accessCount;
-        System.arraycopy(this.data.data, block * Bits.BLOCK_SIZE, data.data, 0, Bits.BLOCK_SIZE);
+        if (this.data != null)
+            this.data.copyTo(block * Bits.BLOCK_SIZE, data, offset, Bits.BLOCK_SIZE);
     }
 
     /** Prints the complete contents of memory to {@link java.lang.System#out}.
@@ -321,10 +380,10 @@ public class MainMemory implements Memory {
      * This can produce a lot of output when the memory is large! */
     public void printContents(PrintWriter w) {
         final int bytesPerLine = 16;
-        for (int i = 0; i < getSize(); ++i) {
+        for (long i = 0; i < getSize(); ++i) {
             if (i % bytesPerLine == 0)
                 w.printf("%06x  │", i);
-            w.printf("  %02x", getByte(i).get());
+            w.printf("  %02x", readByte(i));
             if ((i + 1) % bytesPerLine == 0)
                 w.println();
         }
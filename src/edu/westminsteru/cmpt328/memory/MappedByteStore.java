@@ -0,0 +1,272 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteStore} whose bytes are those of a file, mapped into memory in chunks of up to {@link #CHUNK_SIZE} bytes
+ * (a mapped buffer cannot be any larger). Nothing is read up front: each page of the file is loaded by the operating
+ * system the first time it is touched.
+ *
+ * <p>A read-write store writes through to the file, whose contents are the store's: {@link #clear()} leaves them as
+ * they are. A copy-on-write store never changes the file; each page it writes becomes a private copy, and it keeps a
+ * list of the pages of {@link #PAGE_SIZE} bytes it has written so that {@link #clear()} can read just those back from
+ * the file, returning the store to the file's contents while keeping the same mappings.</p>
+ */
+final class MappedByteStore extends ByteStore {
+
+    static final int CHUNK_BITS = 30;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    static final int PAGE_BITS = PagedByteStore.PAGE_BITS;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final Path file;
+    private final long size;
+    private final boolean readWrite;
+    // null once the store has been closed
+    private MappedByteBuffer[] chunks;
+    // Copy-on-write only: the numbers of the pages written since the file was mapped or the store last cleared, in
+    // writtenPages[0 .. writtenCount - 1] and also indexed by writtenSlots; lastWritten is the page most recently added
+    // (or -1), so that runs of writes to one page skip the index
+    private long[] writtenPages;
+    private int writtenCount;
+    private IntIndex writtenSlots;
+    private long lastWritten = -1;
+
+    /**
+     * Maps the first size bytes of file, which a read-write store creates or extends as needed and a copy-on-write
+     * store requires to be at least that long
+     */
+    MappedByteStore(Path file, long size, boolean readWrite) throws IOException {
+        if (size < 0)
+            throw new IllegalArgumentException("Size cannot be negative");
+        this.file = file;
+        this.size = size;
+        this.readWrite = readWrite;
+        this.chunks = map();
+        if (!readWrite) {
+            this.writtenPages = new long[16];
+            this.writtenSlots = new IntIndex(writtenPages.length);
+        }
+    }
+
+    private MappedByteBuffer[] map() throws IOException {
+        FileChannel.MapMode mode = readWrite ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.PRIVATE;
+        // A private mapping also needs a channel open for writing, even though it never writes to the file
+        try (FileChannel channel = readWrite
+                ? FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (!readWrite && channel.size() < size)
+                throw new IllegalArgumentException(String.format("%s has only %d of the %d bytes to be mapped", file,
+                        channel.size(), size));
+            MappedByteBuffer[] chunks = new MappedByteBuffer[(int)((size + CHUNK_MASK) >>> CHUNK_BITS)];
+            for (int i = 0; i < chunks.length; ++i) {
+                long start = (long)i << CHUNK_BITS;
+                chunks[i] = channel.map(mode, start, Math.min(CHUNK_SIZE, size - start));
+                chunks[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            // The mappings stay valid after the channel is closed
+            return chunks;
+        }
+    }
+
+    /** Returns the chunk holding address */
+    private ByteBuffer chunk(long address) {
+        MappedByteBuffer[] chunks = this.chunks;
+        if (chunks == null)
+            throw new IllegalStateException("Mapped memory has been closed");
+        return chunks[(int)(address >>> CHUNK_BITS)];
+    }
+
+    /** Records that length bytes starting at address are about to be written, if this is a copy-on-write store */
+    private void written(long address, long length) {
+        if (readWrite || length <= 0)
+            return;
+        for (long page = address >>> PAGE_BITS, last = (address + length - 1) >>> PAGE_BITS; page <= last; ++page) {
+            if (page == lastWritten)
+                continue;
+            lastWritten = page;
+            if (writtenSlots.get(page) >= 0)
+                continue;
+            if (writtenCount == writtenPages.length) {
+                writtenPages = Arrays.copyOf(writtenPages, 2 * writtenCount);
+                writtenSlots = new IntIndex(writtenPages.length);
+                for (int slot = 0; slot < writtenCount; ++slot)
+                    writtenSlots.put(writtenPages[slot], slot);
+            }
+            writtenPages[writtenCount] = page;
+            writtenSlots.put(page, writtenCount++);
+        }
+    }
+
+    private static int index(long address) {
+        return (int)address & CHUNK_MASK;
+    }
+
+    private static boolean withinChunk(long address, int length) {
+        return index(address) + length <= CHUNK_SIZE;
+    }
+
+    @Override
+    long getSize() {
+        return size;
+    }
+
+    @Override
+    int getByteAt(long address) {
+        return ((int)chunk(address).get(index(address))) & 0xff;
+    }
+
+    @Override
+    void setByteAt(long address, int value) {
+        written(address, 1);
+        chunk(address).put(index(address), (byte)(value & 0xff));
+    }
+
+    @Override
+    int getIntAt(long address) {
+        if (!withinChunk(address, Bits.INT_SIZE)) {
+            int x = 0;
+            for (int i = Bits.INT_SIZE - 1; i >= 0; --i)
+                x = (x << 8) | getByteAt(address + i);
+            return x;
+        }
+        return chunk(address).getInt(index(address));
+    }
+
+    @Override
+    void setIntAt(long address, int value) {
+        if (!withinChunk(address, Bits.INT_SIZE)) {
+            for (int i = 0; i < Bits.INT_SIZE; ++i, value >>= 8)
+                setByteAt(address + i, value);
+            return;
+        }
+        written(address, Bits.INT_SIZE);
+        chunk(address).putInt(index(address), value);
+    }
+
+    @Override
+    long getLongAt(long address) {
+        if (!withinChunk(address, Bits.DOUBLE_SIZE)) {
+            long x = 0;
+            for (int i = Bits.DOUBLE_SIZE - 1; i >= 0; --i)
+                x = (x << 8) | getByteAt(address + i);
+            return x;
+        }
+        return chunk(address).getLong(index(address));
+    }
+
+    @Override
+    void setLongAt(long address, long value) {
+        if (!withinChunk(address, Bits.DOUBLE_SIZE)) {
+            for (int i = 0; i < Bits.DOUBLE_SIZE; ++i, value >>= 8)
+                setByteAt(address + i, (int)value);
+            return;
+        }
+        written(address, Bits.DOUBLE_SIZE);
+        chunk(address).putLong(index(address), value);
+    }
+
+    @Override
+    void setBytes(long address, byte[] src, int offset, int length) {
+        written(address, length);
+        while (length > 0) {
+            int n = Math.min(length, CHUNK_SIZE - index(address));
+            chunk(address).put(index(address), src, offset, n);
+            address += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void setBytes(long address, ByteBuffer src, int srcIndex, int length) {
+        written(address, length);
+        while (length > 0) {
+            int n = Math.min(length, CHUNK_SIZE - index(address));
+            chunk(address).put(index(address), src, srcIndex, n);
+            address += n;
+            srcIndex += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void copyTo(long from, ByteStore dest, long destAddress, int length) {
+        while (length > 0) {
+            int n = Math.min(length, CHUNK_SIZE - index(from));
+            dest.setBytes(destAddress, chunk(from), index(from), n);
+            from += n;
+            destAddress += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Returns a copy-on-write store to the contents of its file by reading back the pages written since it was mapped
+     * or last cleared; leaves a read-write store (and so its file) as it is
+     */
+    @Override
+    void clear() {
+        if (chunks == null)
+            throw new IllegalStateException("Mapped memory has been closed");
+        if (readWrite || writtenCount == 0)
+            return;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (int slot = 0; slot < writtenCount; ++slot) {
+                long start = writtenPages[slot] << PAGE_BITS;
+                // A page never spans two chunks, as a chunk is a whole number of pages
+                ByteBuffer page = chunk(start).duplicate();
+                page.limit(index(start) + (int)Math.min(PAGE_SIZE, size - start)).position(index(start));
+                for (long position = start; page.hasRemaining(); ) {
+                    int n = channel.read(page, position);
+                    if (n < 0)
+                        throw new IllegalStateException(file + " is now shorter than the memory mapped from it");
+                    position += n;
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + file + " again", e);
+        }
+        writtenSlots.clear();
+        writtenCount = 0;
+        lastWritten = -1;
+    }
+
+    @Override
+    void clear(long from, long to) {
+        written(from, to - from);
+        while (from < to) {
+            ByteBuffer chunk = chunk(from);
+            int i = index(from), end = (int)Math.min(CHUNK_SIZE, i + (to - from));
+            from += end - i;
+            for (; i < end && (i & 7) != 0; ++i)
+                chunk.put(i, (byte)0);
+            for (; i + Bits.DOUBLE_SIZE <= end; i += Bits.DOUBLE_SIZE)
+                chunk.putLong(i, 0);
+            for (; i < end; ++i)
+                chunk.put(i, (byte)0);
+        }
+    }
+
+    /** Writes any changes made to a read-write store out to its file */
+    void force() {
+        if (readWrite && chunks != null) {
+            for (MappedByteBuffer chunk : chunks)
+                chunk.force();
+        }
+    }
+
+    @Override
+    void close() {
+        force();
+        chunks = null;
+    }
+}
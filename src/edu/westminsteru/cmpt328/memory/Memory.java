@@ -4,22 +4,83 @@ package edu.westminsteru.cmpt328.memory;
  * Interface describing a memory, a device that can store values. {@link MainMemory} and {@link Cache} are the main
  * classes implementing this interface that you might care about. Ordinarily you will not use the <code>getInt()</code>,
  * <code>getDouble()</code>, etc. methods; instead use the <code>allocate</code> family of methods in {@link MemorySystem}.
+ *
+ * The value handles returned by <code>getInt()</code> and friends are thin wrappers around the primitive
+ * <code>readInt()</code>/<code>writeInt()</code> family of methods, which can also be called directly to access memory
+ * without creating a handle.
  */
-public interface Memory {
+public interface Memory extends AutoCloseable {
 
     /** Returns the size in bytes of this Memory */
-    int getSize();
+    long getSize();
     /** Returns the access time in cycles of this Memory */
     int getAccessTime();
     /** Returns the name of this memory */
     String getName();
+    /** Returns the number of bits in the addresses of this memory (for a {@link Cache}, of the memory it draws from) */
+    default int getAddressSize() {
+        return Bits.addressSizeFor(getSize());
+    }
     /** Returns the number of accesses to this memory; this counter is reset by calling {@link #reset()} */
     long getAccessCount();
 
-    /** Writes a block of memory back to this Memory. This method is called by {@link Cache}s when evicting a dirty line. */
-    boolean writeback(ByteStore data, int block);
-    /** Pulls a block of data from this Memory. This method is called by {@link Cache}s when fetching a line into cache. */
-    void fetch(ByteStore data, int block);
+    /** Returns true if this Memory only simulates timing (accesses, hits and misses) and stores no data, in which case
+     * reads always return 0 and writes are discarded. */
+    default boolean isTimingOnly() {
+        return false;
+    }
+
+    /** Writes a block of memory, found at the given offset of data, back to this Memory. This method is called by
+     * {@link Cache}s when evicting a dirty line. */
+    boolean writeback(ByteStore data, int offset, long block);
+    /** Pulls a block of data from this Memory into data at the given offset. This method is called by {@link Cache}s
+     * when fetching a line into cache. */
+    void fetch(ByteStore data, int offset, long block);
+
+    /**
+     * Simulates a read (or, if write is true, a write) of size bytes at the given address without transferring any data.
+     * Unlike going through the value returned by e.g. {@link #getInt(long)}, this allocates nothing, so it is the preferred
+     * way to drive the memory when only hits, misses and access times matter.
+     */
+    void touch(long address, int size, boolean write);
+
+    /**
+     * Simulates a batch of accesses, as if by calling {@link #touch(long, int, boolean)} with addresses[i], sizes[i] and
+     * writes[i] for every i from <code>from</code> (inclusive) to <code>to</code> (exclusive).
+     * @return the access time taken by the batch in cycles
+     */
+    default long touchAll(int[] addresses, int[] sizes, boolean[] writes, int from, int to) {
+        long before = getTotalAccessTime();
+        for (int i = from; i < to; ++i)
+            touch(addresses[i], sizes[i], writes[i]);
+        return getTotalAccessTime() - before;
+    }
+
+    /**
+     * Simulates a batch of accesses as {@link #touchAll(int[], int[], boolean[], int, int)} does, but with addresses
+     * that may be beyond the first 2 GiB of a wide address space.
+     * @return the access time taken by the batch in cycles
+     */
+    default long touchAll(long[] addresses, int[] sizes, boolean[] writes, int from, int to) {
+        long before = getTotalAccessTime();
+        for (int i = from; i < to; ++i)
+            touch(addresses[i], sizes[i], writes[i]);
+        return getTotalAccessTime() - before;
+    }
+
+    /**
+     * Simulates a batch of accesses packed as by {@link PackedAccess#pack(long, int, boolean)}, as if by calling
+     * {@link #touch(long, int, boolean)} for each of accesses[from] through accesses[to - 1].
+     * @return the access time taken by the batch in cycles
+     */
+    default long touchAll(long[] accesses, int from, int to) {
+        long before = getTotalAccessTime();
+        for (int i = from; i < to; ++i) {
+            long access = accesses[i];
+            touch(PackedAccess.address(access), PackedAccess.size(access), PackedAccess.isWrite(access));
+        }
+        return getTotalAccessTime() - before;
+    }
 
     /**
      * Resets this memory, putting it back in its initial state. Specifically, after reset a memory will
@@ -32,20 +93,192 @@ public interface Memory {
      */
     void reset();
 
+    /**
+     * Releases the data of this memory if it is kept off the Java heap (see {@link Storage}), after which any access
+     * to it throws {@link IllegalStateException}. Closing a {@link Cache} does not close the memory it draws from.
+     * Does nothing for memories kept on the heap, which the garbage collector releases as usual.
+     */
+    @Override
+    default void close() {
+    }
+
+    /** Reads the byte at the given address of this memory, as an int in the range 0&ndash;255 */
+    int readByte(long address);
+    /** Writes a single byte (the bottom 8 bits of value) to the given address of this memory */
+    void writeByte(long address, int value);
+    /** Reads the int at the given address of this memory */
+    int readInt(long address);
+    /** Writes an int to the given address of this memory */
+    void writeInt(long address, int value);
+    /** Reads the double at the given address of this memory */
+    double readDouble(long address);
+    /** Writes a double to the given address of this memory */
+    void writeDouble(long address, double value);
+
+    /** Reads the pointer at the given address of this memory (currently the same as {@link #readInt(long)}) */
+    default int readPointer(long address) {
+        return readInt(address);
+    }
+
+    /** Writes a pointer to the given address of this memory (currently the same as {@link #writeInt(long, int)}) */
+    default void writePointer(long address, int value) {
+        writeInt(address, value);
+    }
+
     /** Returns the ByteValue at a given address of this memory. Normally you would use {@link MemorySystem#allocateByte()} instead. */
-    ByteValue getByte(int address);
+    default ByteValue getByte(final long address) {
+        return new ByteValue() {
+            @Override
+            public int get() {
+                return readByte(address);
+            }
+
+            @Override
+            public void set(int value) {
+                writeByte(address, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
+
     /** Returns the IntValue at a given address of this memory. Normally you would use {@link MemorySystem#allocateInt()} instead. */
-    IntValue getInt(int address);
+    default IntValue getInt(final long address) {
+        return new IntValue() {
+            @Override
+            public int get() {
+                return readInt(address);
+            }
+
+            @Override
+            public void set(int value) {
+                writeInt(address, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
+
     /** Returns the DoubleValue at a given address of this memory. Normally you would use {@link MemorySystem#allocateDouble()} instead. */
-    DoubleValue getDouble(int address);
+    default DoubleValue getDouble(final long address) {
+        return new DoubleValue() {
+            @Override
+            public double get() {
+                return readDouble(address);
+            }
+
+            @Override
+            public void set(double value) {
+                writeDouble(address, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
+
     /** Returns the IntArrayValue at a given address of this memory. Normally you would use {@link MemorySystem#allocateIntArray(int)} instead. */
-    IntArrayValue getIntArray(int address, int length);
+    default IntArrayValue getIntArray(final long address, final int length) {
+        return new IntArrayValue() {
+            @Override
+            public int getLength() {
+                return length;
+            }
+
+            @Override
+            public int get(int i) {
+                return readInt(address + i * Bits.INT_SIZE);
+            }
+
+            @Override
+            public void set(int i, int value) {
+                writeInt(address + i * Bits.INT_SIZE, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
+
     /** Returns the DoubleArrayValue at a given address of this memory. Normally you would use {@link MemorySystem#allocateDoubleArray(int)} instead. */
-    DoubleArrayValue getDoubleArray(int address, int length);
+    default DoubleArrayValue getDoubleArray(final long address, final int length) {
+        return new DoubleArrayValue() {
+            @Override
+            public int getLength() {
+                return length;
+            }
+
+            @Override
+            public double get(int i) {
+                return readDouble(address + i * Bits.DOUBLE_SIZE);
+            }
+
+            @Override
+            public void set(int i, double value) {
+                writeDouble(address + i * Bits.DOUBLE_SIZE, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
+
     /** Returns the ByteArrayValue at a given address of this memory. Normally you would use {@link MemorySystem#allocateByteArray(int)} instead. */
-    ByteArrayValue getByteArray(int address, int length);
+    default ByteArrayValue getByteArray(final long address, final int length) {
+        return new ByteArrayValue() {
+            @Override
+            public int getLength() {
+                return length;
+            }
+
+            @Override
+            public int get(int i) {
+                return readByte(address + i);
+            }
+
+            @Override
+            public void set(int i, int value) {
+                writeByte(address + i, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
+
     /** Returns the Pointer at a given address of memory. Normally you would use {@link MemorySystem#allocatePointer()} instead. */
-    PointerValue getPointer(int address);
+    default PointerValue getPointer(final long address) {
+        return new PointerValue() {
+            @Override
+            public int get() {
+                return readPointer(address);
+            }
+
+            @Override
+            public void set(int value) {
+                writePointer(address, value);
+            }
+
+            @Override
+            public long getAddress() {
+                return address;
+            }
+        };
+    }
 
     /** Returns the total access time of this Memory. For a simple memory, this is simply access time * accessCount. */
     default long getTotalAccessTime() {
@@ -99,9 +99,9 @@ public class MemorySystem {
     private Memory top;
     private Memory bottom;
 
-    private int heapPtr, stackPtr;
+    private long heapPtr, stackPtr;
     private final int alignment = Bits.DOUBLE_SIZE;
-    private final int alignedByteSize = alignment,
+    private final long alignedByteSize = alignment,
             alignedIntSize = alignedSize(Bits.INT_SIZE),
             alignedDoubleSize = alignedSize(Bits.DOUBLE_SIZE),
             alignedPointerSize = alignedSize(Bits.POINTER_SIZE);
@@ -264,7 +264,7 @@ public class MemorySystem {
     }
 
     public StackFrame allocateStackFrame(int bytes) throws MemoryExhaustedException {
-        bytes = alignedSize(bytes);
+        bytes = (int)alignedSize(bytes);
         stackPtr -= bytes;
         checkMemoryExhausted();
         StackFrame frame = new StackFrame(stackPtr, bytes);
@@ -275,34 +275,122 @@ public class MemorySystem {
         stackPtr += frame.getMemorySize();
     }
 
-    public ByteValue getByteAt(int address) {
+    /**
+     * Simulates a read (or, if write is true, a write) of size bytes at the given address, passing it through every
+     * level of memory as needed. No data is transferred and nothing is allocated; see {@link Memory#touch(long, int, boolean)}.
+     */
+    public void touch(long address, int size, boolean write) {
+        top.touch(address, size, write);
+    }
+
+    /**
+     * Simulates a batch of accesses in one call: access i is of sizes[i] bytes at addresses[i], and is a write if
+     * writes[i] is true. This is equivalent to calling {@link #touch(long, int, boolean)} for each access in turn but
+     * runs them all through the memory hierarchy in a single loop.
+     * @return the access time taken by the batch in cycles
+     */
+    public long touchAll(int[] addresses, int[] sizes, boolean[] writes) {
+        if (sizes.length != addresses.length || writes.length != addresses.length)
+            throw new IllegalArgumentException("addresses, sizes, and writes must all have the same length");
+        return top.touchAll(addresses, sizes, writes, 0, addresses.length);
+    }
+
+    /**
+     * Simulates a batch of accesses in one call as {@link #touchAll(int[], int[], boolean[])} does, but with addresses
+     * that may be beyond the first 2 GiB of a wide address space (see {@link #getAddressSize()}).
+     * @return the access time taken by the batch in cycles
+     */
+    public long touchAll(long[] addresses, int[] sizes, boolean[] writes) {
+        if (sizes.length != addresses.length || writes.length != addresses.length)
+            throw new IllegalArgumentException("addresses, sizes, and writes must all have the same length");
+        return top.touchAll(addresses, sizes, writes, 0, addresses.length);
+    }
+
+    /**
+     * Simulates a batch of accesses packed by {@link PackedAccess#pack(long, int, boolean)} in one call, as in
+     * {@link #touchAll(int[], int[], boolean[])}.
+     * @return the access time taken by the batch in cycles
+     */
+    public long touchAll(long[] accesses) {
+        return top.touchAll(accesses, 0, accesses.length);
+    }
+
+    /** Reads the byte at the given address through the top level of memory, without creating a {@link ByteValue} */
+    public int readByte(long address) {
+        return top.readByte(address);
+    }
+
+    /** Writes a byte to the given address through the top level of memory, without creating a {@link ByteValue} */
+    public void writeByte(long address, int value) {
+        top.writeByte(address, value);
+    }
+
+    /** Reads the int at the given address through the top level of memory, without creating an {@link IntValue} */
+    public int readInt(long address) {
+        return top.readInt(address);
+    }
+
+    /** Writes an int to the given address through the top level of memory, without creating an {@link IntValue} */
+    public void writeInt(long address, int value) {
+        top.writeInt(address, value);
+    }
+
+    /** Reads the double at the given address through the top level of memory, without creating a {@link DoubleValue} */
+    public double readDouble(long address) {
+        return top.readDouble(address);
+    }
+
+    /** Writes a double to the given address through the top level of memory, without creating a {@link DoubleValue} */
+    public void writeDouble(long address, double value) {
+        top.writeDouble(address, value);
+    }
+
+    /** Reads the pointer at the given address through the top level of memory, without creating a {@link PointerValue} */
+    public int readPointer(long address) {
+        return top.readPointer(address);
+    }
+
+    /** Writes a pointer to the given address through the top level of memory, without creating a {@link PointerValue} */
+    public void writePointer(long address, int value) {
+        top.writePointer(address, value);
+    }
+
+    public ByteValue getByteAt(long address) {
         return top.getByte(address);
     }
 
-    public IntValue getIntAt(int address) {
+    public IntValue getIntAt(long address) {
         return top.getInt(address);
     }
 
-    public DoubleValue getDoubleAt(int address) {
+    public DoubleValue getDoubleAt(long address) {
         return top.getDouble(address);
     }
 
-    public ByteArrayValue getByteArrayAt(int address, int length) {
+    public ByteArrayValue getByteArrayAt(long address, int length) {
         return top.getByteArray(address, length);
     }
 
-    public IntArrayValue getIntArrayAt(int address, int length) {
+    public IntArrayValue getIntArrayAt(long address, int length) {
         return top.getIntArray(address, length);
     }
 
-    public DoubleArrayValue getDoubleArrayAt(int address, int length) {
+    public DoubleArrayValue getDoubleArrayAt(long address, int length) {
         return top.getDoubleArray(address, length);
     }
 
-    public PointerValue getPointerAt(int address) {
+    public PointerValue getPointerAt(long address) {
         return top.getPointer(address);
     }
 
+    /**
+     * Returns the number of bits in a memory address of this system, which is set by the size of its {@link MainMemory}
+     * (see {@link MainMemory#withAddressSize(String, int, int)}).
+     */
+    public int getAddressSize() {
+        return bottom.getAddressSize();
+    }
+
     /**
      * Returns the total access time across the entire system in cycles.
      */
@@ -332,6 +420,18 @@ public class MemorySystem {
         }
     }
 
+    /**
+     * Closes each memory, calling {@link Memory#close()} on every memory it uses. This releases any data kept off the
+     * Java heap (see {@link Storage}); the memory system cannot be used afterwards if it had any.
+     */
+    public void closeMemories() {
+        Memory m = top;
+        while (m != null) {
+            m.close();
+            m = (m instanceof Cache) ? ((Cache)m).getSource() : null;
+        }
+    }
+
     /**
      * Prints a table of statistical information on the use of this memory system, including the hit ratio and total
      * access time at each level of memory.
@@ -467,7 +567,8 @@ public class MemorySystem {
 
     private void checkMemoryExhausted() {
         if (stackPtr < heapPtr)
-            throw new IllegalStateException("Memory of " + bottom.getName() + " exhausted!");
+            throw new IllegalStateException(String.format("Memory of %s exhausted! (Its address space is %d bits; a wider one can be given with MainMemory.withAddressSize())",
+                    bottom.getName(), getAddressSize()));
     }
 
     private <T extends MemoryValue> T alignHeap(T v) {
@@ -476,7 +577,7 @@ public class MemorySystem {
         return v;
     }
 
-    private int alignedSize(int bytes) {
-        return (int)Math.ceil((float)bytes / alignment) * alignment;
+    private long alignedSize(long bytes) {
+        return (bytes + alignment - 1) / alignment * alignment;
     }
 }
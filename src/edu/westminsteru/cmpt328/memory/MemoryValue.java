@@ -11,10 +11,10 @@ public interface MemoryValue {
     /**
      * Returns the size (number of bytes) that this value occupies in memory.
      */
-    int getMemorySize();
+    long getMemorySize();
 
     /**
      * Returns the starting memory address of this value.
      */
-    int getAddress();
+    long getAddress();
 }
@@ -0,0 +1,48 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * Per-line replacement metadata packed into longs: each value gets the smallest power-of-2 number of bits (1, 2, 4, 8,
+ * 16, 32 or 64) that holds the width a {@link ReplacementPolicy} asked for, so that e.g. the LRU ranks of an 8-way
+ * cache take 4 bits per line rather than 64. Values are unsigned, except that 64-bit values are plain longs.
+ */
+public final class Metadata {
+
+    private final long[] words;
+    // log2 of the bits per value and of the values per word
+    private final int widthBits, perWordBits;
+    private final long mask;
+
+    Metadata(int count, int bits) {
+        if (bits < 1 || bits > Long.SIZE)
+            throw new IllegalArgumentException("Metadata must be 1 to 64 bits wide");
+        int width = Integer.highestOneBit(bits) == bits ? bits : Integer.highestOneBit(bits) << 1;
+        widthBits = Bits.log2(width);
+        perWordBits = Bits.log2(Long.SIZE / width);
+        mask = (width == Long.SIZE) ? -1L : (1L << width) - 1;
+        words = new long[(count + (1 << perWordBits) - 1) >>> perWordBits];
+    }
+
+    /** Returns the number of bits needed to hold values from 0 to maxValue */
+    public static int bitsFor(long maxValue) {
+        return Math.max(1, Long.SIZE - Long.numberOfLeadingZeros(maxValue));
+    }
+
+    /** Returns the largest value that can be stored */
+    public long max() {
+        return mask;
+    }
+
+    private int shift(int index) {
+        return (index & ((1 << perWordBits) - 1)) << widthBits;
+    }
+
+    public long get(int index) {
+        return (words[index >>> perWordBits] >>> shift(index)) & mask;
+    }
+
+    public void set(int index, long value) {
+        int shift = shift(index);
+        int word = index >>> perWordBits;
+        words[word] = (words[word] & ~(mask << shift)) | ((value & mask) << shift);
+    }
+}
@@ -0,0 +1,56 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.function.IntToLongFunction;
+
+/**
+ * For each access of a recorded trace, how many accesses later the same block is accessed again. This is what
+ * {@link ReplacementAlgorithm#OPT} needs to know to evict the line whose block will be needed furthest in the future;
+ * pass it to {@link Cache.Builder#nextUse(NextUse)}.
+ *
+ * <p>It is computed in a single backward pass over the trace and kept as one int per access, so even traces of
+ * hundreds of millions of accesses need no per-access objects. The table used along the way grows with the number of
+ * distinct blocks rather than the length of the trace.</p>
+ */
+public final class NextUse {
+
+    /** The distance recorded for an access whose block is never accessed again */
+    public static final int NEVER = 0;
+
+    private static final int INITIAL_BLOCKS = 1 << 10;
+
+    private final int[] distances;
+
+    private NextUse(int length, IntToLongFunction addressAt) {
+        distances = new int[length];
+        // Position of the nearest later access to each block seen so far, doubled in size whenever it fills up
+        IntIndex lastSeen = new IntIndex(INITIAL_BLOCKS);
+        for (int i = length - 1; i >= 0; --i) {
+            long block = addressAt.applyAsLong(i) / Bits.BLOCK_SIZE;
+            int next = lastSeen.get(block);
+            distances[i] = (next < 0) ? NEVER : next - i;
+            if (next < 0 && lastSeen.size() == lastSeen.capacity())
+                lastSeen = lastSeen.grown();
+            lastSeen.put(block, i);
+        }
+    }
+
+    /** Computes the next uses of a trace given as the address of each access */
+    public static NextUse of(int[] addresses) {
+        return new NextUse(addresses.length, i -> addresses[i]);
+    }
+
+    /** Computes the next uses of a trace of accesses packed by {@link PackedAccess#pack(long, int, boolean)} */
+    public static NextUse ofPacked(long[] accesses) {
+        return new NextUse(accesses.length, i -> PackedAccess.address(accesses[i]));
+    }
+
+    /** Returns the number of accesses in the trace */
+    public int length() {
+        return distances.length;
+    }
+
+    /** Returns how many accesses after access index its block is accessed again, or {@link #NEVER} */
+    public int distance(int index) {
+        return distances[index];
+    }
+}
@@ -0,0 +1,98 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.Arrays;
+
+/**
+ * A group of doubly linked lists over the nodes 0 to nodeCount - 1, with the links kept in int arrays so that adding,
+ * removing and moving nodes is O(1) and never allocates. A node is in at most one of the lists at a time. Used by the
+ * replacement policies that need several recency-ordered lists per set.
+ */
+final class NodeLists {
+
+    static final int NONE = -1;
+
+    private final int[] prev, next;
+    private final int[] head, tail, size;
+
+    NodeLists(int nodeCount, int listCount) {
+        prev = new int[nodeCount];
+        next = new int[nodeCount];
+        head = new int[listCount];
+        tail = new int[listCount];
+        size = new int[listCount];
+        Arrays.fill(head, NONE);
+        Arrays.fill(tail, NONE);
+    }
+
+    /** Returns the first node of a list, or {@link #NONE} if it is empty */
+    int first(int list) {
+        return head[list];
+    }
+
+    /** Returns the last node of a list, or {@link #NONE} if it is empty */
+    int last(int list) {
+        return tail[list];
+    }
+
+    /** Returns the node after node in its list, or {@link #NONE} */
+    int next(int node) {
+        return next[node];
+    }
+
+    int size(int list) {
+        return size[list];
+    }
+
+    void addLast(int list, int node) {
+        int t = tail[list];
+        prev[node] = t;
+        next[node] = NONE;
+        if (t == NONE)
+            head[list] = node;
+        else
+            next[t] = node;
+        tail[list] = node;
+        ++size[list];
+    }
+
+    /** Removes node from list, which must be the list it is in */
+    void remove(int list, int node) {
+        int p = prev[node], n = next[node];
+        if (p == NONE)
+            head[list] = n;
+        else
+            next[p] = n;
+        if (n == NONE)
+            tail[list] = p;
+        else
+            prev[n] = p;
+        --size[list];
+    }
+
+    /** Puts node in place of old, which must be in list (and is then in no list) */
+    void replace(int list, int old, int node) {
+        int p = prev[old], n = next[old];
+        prev[node] = p;
+        next[node] = n;
+        if (p == NONE)
+            head[list] = node;
+        else
+            next[p] = node;
+        if (n == NONE)
+            tail[list] = node;
+        else
+            prev[n] = node;
+    }
+
+    /** Moves node from the list it is in to the end of another (or the same) list */
+    void moveToLast(int from, int to, int node) {
+        remove(from, node);
+        addLast(to, node);
+    }
+
+    /** Empties a list without visiting its nodes (which are then in no list) */
+    void clear(int list) {
+        head[list] = tail[list] = NONE;
+        size[list] = 0;
+    }
+}
@@ -0,0 +1,303 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteStore} kept off the Java heap (see {@link Storage}), in little-endian direct buffers of
+ * {@link #CHUNK_SIZE} bytes called chunks that are each allocated the first time they are written. As with the pages of
+ * {@link PagedByteStore}, stores of up to {@link #FLAT_TABLE_CHUNKS} chunks find a chunk by indexing a flat table and
+ * larger ones hash the chunk number (remembering the last chunk found), and the allocated chunks are listed so that
+ * {@link #clear()} only visits those.
+ *
+ * <p>A store that is not shared belongs to the thread that created it; that is checked when a chunk is allocated and
+ * when the store is closed, though not on every access. Closing a store drops its chunks, which are freed when the
+ * garbage collector next notices them, and makes any further access throw {@link IllegalStateException}.</p>
+ */
+final class OffHeapByteStore extends ByteStore {
+
+    static final int CHUNK_BITS = 16;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    /** The most chunks a store can have and still use a flat chunk table (enough for 4 GiB) */
+    static final int FLAT_TABLE_CHUNKS = 1 << 16;
+
+    private final long size;
+    private final Thread owner;
+    // Flat chunk table, or null if the store is too large for one
+    private final ByteBuffer[] table;
+    // The allocated chunks and their numbers, in allocatedChunks/allocatedNumbers[0 .. allocatedCount - 1]; a chunk's
+    // position in these lists is its slot
+    private ByteBuffer[] allocatedChunks = new ByteBuffer[16];
+    private long[] allocatedNumbers = new long[16];
+    private int allocatedCount;
+    private long allocatedSize;
+    // The slot of each allocated chunk: indexed by chunk number with a flat chunk table, otherwise hashed
+    private final int[] flatSlots;
+    private IntIndex hashedSlots;
+    // With a hashed chunk table, the chunk most recently found (lastNumber is -1 if none)
+    private long lastNumber = -1;
+    private ByteBuffer lastChunk;
+    private boolean closed;
+
+    OffHeapByteStore(long size, boolean shared) {
+        if (size < 0)
+            throw new IllegalArgumentException("Size cannot be negative");
+        this.size = size;
+        this.owner = shared ? null : Thread.currentThread();
+        long chunkCount = (size + CHUNK_MASK) >>> CHUNK_BITS;
+        if (chunkCount <= FLAT_TABLE_CHUNKS) {
+            this.table = new ByteBuffer[(int)chunkCount];
+            this.flatSlots = new int[(int)chunkCount];
+        } else {
+            this.table = null;
+            this.flatSlots = null;
+            this.hashedSlots = new IntIndex(allocatedChunks.length);
+        }
+    }
+
+    private void checkOwner() {
+        if (owner != null && Thread.currentThread() != owner)
+            throw new IllegalStateException("Off-heap memory belongs to thread " + owner.getName());
+    }
+
+    private void checkAddress(long address) {
+        if (address < 0 || address >= size)
+            throw new ArrayIndexOutOfBoundsException("Address " + address + " outside store of size " + size);
+    }
+
+    /** Returns the chunk holding address, or null if it has not been written yet */
+    private ByteBuffer find(long address) {
+        if (closed)
+            throw new IllegalStateException("Off-heap memory has been closed");
+        long number = address >>> CHUNK_BITS;
+        if (table != null)
+            return (number < table.length) ? table[(int)number] : null;
+        if (number == lastNumber)
+            return lastChunk;
+        int slot = hashedSlots.get(number);
+        if (slot < 0)
+            return null;
+        lastNumber = number;
+        return lastChunk = allocatedChunks[slot];
+    }
+
+    /** Returns the chunk holding address, allocating it if it has not been written yet */
+    private ByteBuffer chunk(long address) {
+        ByteBuffer chunk = find(address);
+        if (chunk == null) {
+            checkAddress(address);
+            checkOwner();
+            long number = address >>> CHUNK_BITS;
+            int capacity = (int)Math.min(CHUNK_SIZE, size - (number << CHUNK_BITS));
+            chunk = ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+            if (allocatedCount == allocatedChunks.length) {
+                allocatedChunks = Arrays.copyOf(allocatedChunks, 2 * allocatedCount);
+                allocatedNumbers = Arrays.copyOf(allocatedNumbers, 2 * allocatedCount);
+                if (hashedSlots != null)
+                    rehash();
+            }
+            allocatedChunks[allocatedCount] = chunk;
+            allocatedNumbers[allocatedCount] = number;
+            if (table != null) {
+                table[(int)number] = chunk;
+                flatSlots[(int)number] = allocatedCount;
+            } else {
+                hashedSlots.put(number, allocatedCount);
+            }
+            ++allocatedCount;
+            allocatedSize += capacity;
+        }
+        return chunk;
+    }
+
+    // Makes a hashed chunk table big enough for every slot of the allocated lists
+    private void rehash() {
+        hashedSlots = new IntIndex(allocatedChunks.length);
+        for (int slot = 0; slot < allocatedCount; ++slot)
+            hashedSlots.put(allocatedNumbers[slot], slot);
+    }
+
+    private void release(long number) {
+        int slot = (table != null) ? flatSlots[(int)number] : hashedSlots.get(number);
+        allocatedSize -= allocatedChunks[slot].capacity();
+        // Move the last chunk of the lists into the released chunk's slot
+        int last = --allocatedCount;
+        long lastChunkNumber = allocatedNumbers[last];
+        allocatedChunks[slot] = allocatedChunks[last];
+        allocatedNumbers[slot] = lastChunkNumber;
+        allocatedChunks[last] = null;
+        if (table != null) {
+            table[(int)number] = null;
+            flatSlots[(int)lastChunkNumber] = slot;
+        } else {
+            hashedSlots.remove(number);
+            if (lastChunkNumber != number)
+                hashedSlots.put(lastChunkNumber, slot);
+            lastNumber = -1;
+            lastChunk = null;
+        }
+    }
+
+    private static int index(long address) {
+        return (int)address & CHUNK_MASK;
+    }
+
+    private static boolean withinChunk(long address, int length) {
+        return index(address) + length <= CHUNK_SIZE;
+    }
+
+    @Override
+    long getSize() {
+        return size;
+    }
+
+    @Override
+    long getAllocatedSize() {
+        return allocatedSize;
+    }
+
+    @Override
+    int getByteAt(long address) {
+        ByteBuffer chunk = find(address);
+        if (chunk == null) {
+            checkAddress(address);
+            return 0;
+        }
+        return ((int)chunk.get(index(address))) & 0xff;
+    }
+
+    @Override
+    void setByteAt(long address, int value) {
+        chunk(address).put(index(address), (byte)(value & 0xff));
+    }
+
+    @Override
+    int getIntAt(long address) {
+        if (!withinChunk(address, Bits.INT_SIZE)) {
+            int x = 0;
+            for (int i = Bits.INT_SIZE - 1; i >= 0; --i)
+                x = (x << 8) | getByteAt(address + i);
+            return x;
+        }
+        ByteBuffer chunk = find(address);
+        return (chunk == null) ? getByteAt(address) : chunk.getInt(index(address));
+    }
+
+    @Override
+    void setIntAt(long address, int value) {
+        if (!withinChunk(address, Bits.INT_SIZE)) {
+            for (int i = 0; i < Bits.INT_SIZE; ++i, value >>= 8)
+                setByteAt(address + i, value);
+            return;
+        }
+        chunk(address).putInt(index(address), value);
+    }
+
+    @Override
+    long getLongAt(long address) {
+        if (!withinChunk(address, Bits.DOUBLE_SIZE)) {
+            long x = 0;
+            for (int i = Bits.DOUBLE_SIZE - 1; i >= 0; --i)
+                x = (x << 8) | getByteAt(address + i);
+            return x;
+        }
+        ByteBuffer chunk = find(address);
+        return (chunk == null) ? getByteAt(address) : chunk.getLong(index(address));
+    }
+
+    @Override
+    void setLongAt(long address, long value) {
+        if (!withinChunk(address, Bits.DOUBLE_SIZE)) {
+            for (int i = 0; i < Bits.DOUBLE_SIZE; ++i, value >>= 8)
+                setByteAt(address + i, (int)value);
+            return;
+        }
+        chunk(address).putLong(index(address), value);
+    }
+
+    @Override
+    void setBytes(long address, byte[] src, int offset, int length) {
+        while (length > 0) {
+            int n = Math.min(length, CHUNK_SIZE - index(address));
+            chunk(address).put(index(address), src, offset, n);
+            address += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void setBytes(long address, ByteBuffer src, int index, int length) {
+        while (length > 0) {
+            int n = Math.min(length, CHUNK_SIZE - index(address));
+            chunk(address).put(index(address), src, index, n);
+            address += n;
+            index += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void copyTo(long from, ByteStore dest, long destAddress, int length) {
+        while (length > 0) {
+            int n = Math.min(length, CHUNK_SIZE - index(from));
+            ByteBuffer chunk = find(from);
+            if (chunk == null) {
+                checkAddress(from);
+                checkAddress(from + n - 1);
+                dest.clear(destAddress, destAddress + n);
+            } else {
+                dest.setBytes(destAddress, chunk, index(from), n);
+            }
+            from += n;
+            destAddress += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void clear() {
+        if (closed)
+            throw new IllegalStateException("Off-heap memory has been closed");
+        if (table != null) {
+            for (int i = 0; i < allocatedCount; ++i)
+                table[(int)allocatedNumbers[i]] = null;
+        } else {
+            hashedSlots.clear();
+            lastNumber = -1;
+            lastChunk = null;
+        }
+        Arrays.fill(allocatedChunks, 0, allocatedCount, null);
+        allocatedCount = 0;
+        allocatedSize = 0;
+    }
+
+    @Override
+    void clear(long from, long to) {
+        // Whole chunks are dropped rather than zeroed; only partially covered ones are filled
+        while (from < to) {
+            ByteBuffer chunk = find(from);
+            int n = (int)Math.min(to - from, CHUNK_SIZE - index(from));
+            if (chunk != null) {
+                if (n == chunk.capacity()) {
+                    release(from >>> CHUNK_BITS);
+                } else {
+                    for (int i = index(from), end = i + n; i < end; ++i)
+                        chunk.put(i, (byte)0);
+                }
+            }
+            from += n;
+        }
+    }
+
+    @Override
+    void close() {
+        if (closed)
+            return;
+        checkOwner();
+        clear();
+        closed = true;
+    }
+}
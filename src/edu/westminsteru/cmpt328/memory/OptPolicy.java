@@ -0,0 +1,126 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * {@link ReplacementAlgorithm#OPT}, Belady's optimal replacement: evicts the line whose block will next be used
+ * furthest in the future, as told by a {@link NextUse} computed from the trace being replayed. Every access to the
+ * cache (hit or miss) is taken to be the next access of the trace.
+ *
+ * <p>Each set keeps its lines in a max-heap ordered by next use, so an access costs O(log ways) and choosing a victim
+ * O(1).</p>
+ */
+final class OptPolicy extends ReplacementPolicy {
+
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    private final NextUse nextUse;
+    // Index in the trace of the next access
+    private int position;
+    // Index in the trace of the next use of each line's block, or NEVER
+    private final int[] nextUseOf;
+    // The heap of set s occupies heap[s * ways] onwards, the first heapSize[s] entries; heapIndex is each line's place
+    // in its set's heap
+    private final int[] heap, heapIndex, heapSize;
+
+    OptPolicy(int lineCount, int ways, NextUse nextUse) {
+        super(ways);
+        this.nextUse = nextUse;
+        nextUseOf = new int[lineCount];
+        heap = new int[lineCount];
+        heapIndex = new int[lineCount];
+        heapSize = new int[lineCount / ways];
+    }
+
+    // Returns when the block of the current access of the trace will next be used, and moves on to the next access
+    private int advance() {
+        if (position >= nextUse.length())
+            throw new IllegalStateException("Cache with OPT replacement accessed more often than its trace");
+        int distance = nextUse.distance(position);
+        int next = (distance == NextUse.NEVER) ? NEVER : position + distance;
+        ++position;
+        return next;
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        int line = base + way;
+        nextUseOf[line] = advance();
+        if (heapSize[set] < ways) {
+            // Filling a vacant line
+            int k = heapSize[set]++;
+            heap[base + k] = line;
+            heapIndex[line] = k;
+            siftUp(base, k);
+        } else {
+            updated(set, base, line);
+        }
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        int line = base + way;
+        nextUseOf[line] = advance();
+        updated(set, base, line);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return heap[base] - base;
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        heapSize[set] = 0;
+    }
+
+    @Override
+    protected void reset() {
+        position = 0;
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        // Accesses until the line's block is used again, or -1 for never
+        return (nextUseOf[line] == NEVER) ? -1 : nextUseOf[line] - position;
+    }
+
+    // Restores the heap order after the next use of line has changed
+    private void updated(int set, int base, int line) {
+        int k = heapIndex[line];
+        if (k > 0 && nextUseOf[heap[base + (k - 1) / 2]] < nextUseOf[line])
+            siftUp(base, k);
+        else
+            siftDown(base, k, heapSize[set]);
+    }
+
+    private void siftUp(int base, int k) {
+        int line = heap[base + k];
+        while (k > 0) {
+            int parent = (k - 1) / 2;
+            int parentLine = heap[base + parent];
+            if (nextUseOf[parentLine] >= nextUseOf[line])
+                break;
+            heap[base + k] = parentLine;
+            heapIndex[parentLine] = k;
+            k = parent;
+        }
+        heap[base + k] = line;
+        heapIndex[line] = k;
+    }
+
+    private void siftDown(int base, int k, int size) {
+        int line = heap[base + k];
+        while (2 * k + 1 < size) {
+            int child = 2 * k + 1;
+            if (child + 1 < size && nextUseOf[heap[base + child + 1]] > nextUseOf[heap[base + child]])
+                ++child;
+            int childLine = heap[base + child];
+            if (nextUseOf[childLine] <= nextUseOf[line])
+                break;
+            heap[base + k] = childLine;
+            heapIndex[childLine] = k;
+            k = child;
+        }
+        heap[base + k] = line;
+        heapIndex[line] = k;
+    }
+}
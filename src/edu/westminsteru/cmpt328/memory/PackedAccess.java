@@ -0,0 +1,47 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * Routines for packing a single memory access &mdash; address, size in bytes, and whether it is a write &mdash; into a
+ * long, so that a whole trace of accesses can be kept in a <code>long[]</code> and passed to
+ * {@link MemorySystem#touchAll(long[])} without creating any objects.
+ *
+ * The address occupies the bottom 48 bits (enough for {@link Bits#MAX_ADDRESS_SIZE}), the size the next 15 bits, and
+ * the top bit is set for writes.
+ */
+public final class PackedAccess {
+
+    private static final int SIZE_SHIFT = Bits.MAX_ADDRESS_SIZE;
+    private static final long ADDRESS_MASK = (1L << SIZE_SHIFT) - 1;
+    private static final int MAX_SIZE = 0x7fff;
+    private static final long WRITE_BIT = 1L << 63;
+
+    private PackedAccess() {
+        throw new RuntimeException();
+    }
+
+    /** Packs an access into a long */
+    public static long pack(long address, int size, boolean write) {
+        if (size < 1 || size > MAX_SIZE)
+            throw new IllegalArgumentException("Bad access size " + size);
+        if (address < 0 || address > ADDRESS_MASK)
+            throw new IllegalArgumentException("Bad access address " + address);
+        return address
+                | ((long)size << SIZE_SHIFT)
+                | (write ? WRITE_BIT : 0);
+    }
+
+    /** Returns the address of a packed access */
+    public static long address(long access) {
+        return access & ADDRESS_MASK;
+    }
+
+    /** Returns the size in bytes of a packed access */
+    public static int size(long access) {
+        return (int)(access >>> SIZE_SHIFT) & MAX_SIZE;
+    }
+
+    /** Returns true if a packed access is a write */
+    public static boolean isWrite(long access) {
+        return access < 0;
+    }
+}
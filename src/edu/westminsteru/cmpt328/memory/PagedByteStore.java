@@ -0,0 +1,272 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A {@link ByteStore} that is split into pages of {@link #PAGE_SIZE} bytes, each allocated the first time it is
+ * written. Pages that were never written read as zero, so creating a large store costs only its page table and a
+ * short run pays only for the pages it uses. The allocated pages are also listed, so that {@link #clear()} only visits
+ * the pages that were written rather than the whole page table.
+ *
+ * <p>Stores of up to {@link #FLAT_TABLE_PAGES} pages find a page by indexing a flat page table. Larger ones (such as
+ * the main memory of a 48-bit address space, which has 2<sup>36</sup> pages) could not afford such a table, so they
+ * hash the page number instead and remember the last page found, which keeps runs of accesses to one page as cheap as
+ * with the flat table.</p>
+ */
+final class PagedByteStore extends ByteStore {
+
+    static final int PAGE_BITS = 12;
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+    /** The most pages a store can have and still use a flat page table (enough for 4 GiB) */
+    static final int FLAT_TABLE_PAGES = 1 << 20;
+
+    private final long size;
+    // Flat page table, or null if the store is too large for one
+    private final byte[][] pages;
+    // The allocated pages and their numbers, in allocatedPages/allocatedNumbers[0 .. allocatedCount - 1]; a page's
+    // position in these lists is its slot
+    private byte[][] allocatedPages = new byte[16][];
+    private long[] allocatedNumbers = new long[16];
+    private int allocatedCount;
+    // The slot of each allocated page: indexed by page number with a flat page table, otherwise hashed
+    private final int[] flatSlots;
+    private IntIndex hashedSlots;
+    // With a hashed page table, the page most recently found (lastNumber is -1 if none)
+    private long lastNumber = -1;
+    private byte[] lastPage;
+
+    PagedByteStore(long size) {
+        if (size < 0)
+            throw new IllegalArgumentException("Size cannot be negative");
+        this.size = size;
+        long pageCount = (size + PAGE_MASK) >>> PAGE_BITS;
+        if (pageCount <= FLAT_TABLE_PAGES) {
+            this.pages = new byte[(int)pageCount][];
+            this.flatSlots = new int[(int)pageCount];
+        } else {
+            this.pages = null;
+            this.flatSlots = null;
+            this.hashedSlots = new IntIndex(allocatedPages.length);
+        }
+    }
+
+    /** Returns the page numbered number, or null if it has not been written yet */
+    private byte[] find(long number) {
+        if (pages != null)
+            return (number < pages.length) ? pages[(int)number] : null;
+        if (number == lastNumber)
+            return lastPage;
+        int slot = hashedSlots.get(number);
+        if (slot < 0)
+            return null;
+        lastNumber = number;
+        return lastPage = allocatedPages[slot];
+    }
+
+    private void checkAddress(long address) {
+        if (address < 0 || address >= size)
+            throw new ArrayIndexOutOfBoundsException("Address " + address + " outside store of size " + size);
+    }
+
+    /** Returns the page holding address, allocating it if it has not been written yet */
+    private byte[] page(long address) {
+        long number = address >>> PAGE_BITS;
+        byte[] page = find(number);
+        if (page == null) {
+            checkAddress(address);
+            page = new byte[PAGE_SIZE];
+            if (allocatedCount == allocatedPages.length) {
+                allocatedPages = Arrays.copyOf(allocatedPages, 2 * allocatedCount);
+                allocatedNumbers = Arrays.copyOf(allocatedNumbers, 2 * allocatedCount);
+                if (hashedSlots != null)
+                    rehash();
+            }
+            allocatedPages[allocatedCount] = page;
+            allocatedNumbers[allocatedCount] = number;
+            if (pages != null) {
+                pages[(int)number] = page;
+                flatSlots[(int)number] = allocatedCount;
+            } else {
+                hashedSlots.put(number, allocatedCount);
+            }
+            ++allocatedCount;
+        }
+        return page;
+    }
+
+    // Makes a hashed page table big enough for every slot of the allocated lists
+    private void rehash() {
+        hashedSlots = new IntIndex(allocatedPages.length);
+        for (int slot = 0; slot < allocatedCount; ++slot)
+            hashedSlots.put(allocatedNumbers[slot], slot);
+    }
+
+    private void release(long number) {
+        int slot = (pages != null) ? flatSlots[(int)number] : hashedSlots.get(number);
+        // Move the last page of the lists into the released page's slot
+        int last = --allocatedCount;
+        long lastPageNumber = allocatedNumbers[last];
+        allocatedPages[slot] = allocatedPages[last];
+        allocatedNumbers[slot] = lastPageNumber;
+        allocatedPages[last] = null;
+        if (pages != null) {
+            pages[(int)number] = null;
+            flatSlots[(int)lastPageNumber] = slot;
+        } else {
+            hashedSlots.remove(number);
+            if (lastPageNumber != number)
+                hashedSlots.put(lastPageNumber, slot);
+            lastNumber = -1;
+        }
+    }
+
+    private static boolean withinPage(long address, int length) {
+        return (address & PAGE_MASK) + length <= PAGE_SIZE;
+    }
+
+    /** Returns the number of pages that have been allocated */
+    int getAllocatedPageCount() {
+        return allocatedCount;
+    }
+
+    @Override
+    long getSize() {
+        return size;
+    }
+
+    @Override
+    long getAllocatedSize() {
+        return (long)allocatedCount * PAGE_SIZE;
+    }
+
+    @Override
+    int getByteAt(long address) {
+        byte[] page = find(address >>> PAGE_BITS);
+        if (page == null) {
+            checkAddress(address);
+            return 0;
+        }
+        return ((int)page[(int)address & PAGE_MASK]) & 0xff;
+    }
+
+    @Override
+    void setByteAt(long address, int value) {
+        page(address)[(int)address & PAGE_MASK] = (byte)(value & 0xff);
+    }
+
+    @Override
+    int getIntAt(long address) {
+        if (!withinPage(address, Bits.INT_SIZE)) {
+            int x = 0;
+            for (int i = Bits.INT_SIZE - 1; i >= 0; --i)
+                x = (x << 8) | getByteAt(address + i);
+            return x;
+        }
+        byte[] page = find(address >>> PAGE_BITS);
+        // getByteAt() of an unwritten page is 0 (after checking the bounds)
+        return (page == null) ? getByteAt(address) : getInt(page, (int)address & PAGE_MASK);
+    }
+
+    @Override
+    void setIntAt(long address, int value) {
+        if (!withinPage(address, Bits.INT_SIZE)) {
+            for (int i = 0; i < Bits.INT_SIZE; ++i, value >>= 8)
+                setByteAt(address + i, value);
+            return;
+        }
+        setInt(page(address), (int)address & PAGE_MASK, value);
+    }
+
+    @Override
+    long getLongAt(long address) {
+        if (!withinPage(address, Bits.DOUBLE_SIZE)) {
+            long x = 0;
+            for (int i = Bits.DOUBLE_SIZE - 1; i >= 0; --i)
+                x = (x << 8) | getByteAt(address + i);
+            return x;
+        }
+        byte[] page = find(address >>> PAGE_BITS);
+        return (page == null) ? getByteAt(address) : getLong(page, (int)address & PAGE_MASK);
+    }
+
+    @Override
+    void setLongAt(long address, long value) {
+        if (!withinPage(address, Bits.DOUBLE_SIZE)) {
+            for (int i = 0; i < Bits.DOUBLE_SIZE; ++i, value >>= 8)
+                setByteAt(address + i, (int)value);
+            return;
+        }
+        setLong(page(address), (int)address & PAGE_MASK, value);
+    }
+
+    @Override
+    void setBytes(long address, byte[] src, int offset, int length) {
+        while (length > 0) {
+            int n = Math.min(length, PAGE_SIZE - ((int)address & PAGE_MASK));
+            System.arraycopy(src, offset, page(address), (int)address & PAGE_MASK, n);
+            address += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void setBytes(long address, ByteBuffer src, int index, int length) {
+        while (length > 0) {
+            int n = Math.min(length, PAGE_SIZE - ((int)address & PAGE_MASK));
+            src.get(index, page(address), (int)address & PAGE_MASK, n);
+            address += n;
+            index += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void copyTo(long from, ByteStore dest, long destAddress, int length) {
+        while (length > 0) {
+            int n = Math.min(length, PAGE_SIZE - ((int)from & PAGE_MASK));
+            byte[] page = find(from >>> PAGE_BITS);
+            if (page == null) {
+                checkAddress(from);
+                checkAddress(from + n - 1);
+                dest.clear(destAddress, destAddress + n);
+            } else {
+                dest.setBytes(destAddress, page, (int)from & PAGE_MASK, n);
+            }
+            from += n;
+            destAddress += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    void clear() {
+        if (pages != null) {
+            for (int i = 0; i < allocatedCount; ++i)
+                pages[(int)allocatedNumbers[i]] = null;
+        } else {
+            hashedSlots.clear();
+            lastNumber = -1;
+        }
+        Arrays.fill(allocatedPages, 0, allocatedCount, null);
+        allocatedCount = 0;
+    }
+
+    @Override
+    void clear(long from, long to) {
+        // Whole pages are released rather than zeroed; only partially covered ones are filled
+        while (from < to) {
+            int n = (int)Math.min(to - from, PAGE_SIZE - ((int)from & PAGE_MASK));
+            byte[] page = find(from >>> PAGE_BITS);
+            if (page != null) {
+                if (n == PAGE_SIZE)
+                    release(from >>> PAGE_BITS);
+                else
+                    Arrays.fill(page, (int)from & PAGE_MASK, ((int)from & PAGE_MASK) + n, (byte)0);
+            }
+            from += n;
+        }
+    }
+}
@@ -3,7 +3,8 @@ package edu.westminsteru.cmpt328.memory;
 /**
  * An interface representing a pointer (memory address) stored in memory. Such a pointer can hold an address of some
  * other kind of {@link MemoryValue} such as an {@link IntValue} or {@link DoubleValue}. Memory addresses are
- * represented as ints and use the same amount of memory as an {@code IntValue}.
+ * represented as ints and use the same amount of memory as an {@code IntValue}, so a pointer can only refer to the first
+ * 4 GiB of a wider address space.
  *
  * @see MemorySystem#allocatePointer
  */
@@ -15,7 +16,7 @@ public interface PointerValue extends MemoryValue {
     void set(int value);
 
     @Override
-    default int getMemorySize() {
+    default long getMemorySize() {
         return Bits.POINTER_SIZE;
     }
 }
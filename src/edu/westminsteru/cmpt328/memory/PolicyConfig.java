@@ -0,0 +1,11 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * What a {@link ReplacementPolicyProvider} is told about the {@link Cache} it is creating a {@link ReplacementPolicy} for.
+ *
+ * @param lineCount the number of lines in the cache
+ * @param linesPerSet the number of lines in each set
+ * @param nextUse the next uses of the trace the cache will replay, or null if it was not given one
+ * @param seed the seed for any random choices the policy makes
+ */
+public record PolicyConfig(int lineCount, int linesPerSet, NextUse nextUse, long seed) {}
@@ -0,0 +1,36 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.SplittableRandom;
+
+/**
+ * {@link ReplacementAlgorithm#RANDOM}: keeps no state but its own random number generator, and evicts a uniformly
+ * chosen way. The generator is seeded from {@link Cache.Builder#seed(long)} and restarted by {@link Cache#reset()}, so
+ * a run can be repeated exactly, and no two caches share one.
+ */
+final class RandomPolicy extends ReplacementPolicy {
+
+    private final long seed;
+    private SplittableRandom random;
+
+    RandomPolicy(int ways, long seed) {
+        super(ways);
+        this.seed = seed;
+        this.random = new SplittableRandom(seed);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {}
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {}
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        return random.nextInt(ways);
+    }
+
+    @Override
+    protected void reset() {
+        random = new SplittableRandom(seed);
+    }
+}
@@ -1,35 +1,33 @@
 package edu.westminsteru.cmpt328.memory;
 
 import java.io.PrintWriter;
-import java.util.List;
-import java.util.Random;
 
 /**
  * An enumeration describing common replacement algorithms for associative/set-associative caches. Each of these
  * algorithms use and update the "meta" field of cache lines (displayed by {@link Cache#print(PrintWriter)}) to decide
- * which line to evict.
+ * which line to evict. Further algorithms can be plugged in as {@link ReplacementPolicyProvider}s (see
+ * {@link ReplacementPolicies}).
  */
-public enum ReplacementAlgorithm {
+public enum ReplacementAlgorithm implements ReplacementPolicyProvider {
 
     /**
      * The LRU (least recently used) algorithm &mdash; the line that was accessed longest ago is evicted
      */
     LRU {
         @Override
-        void lineAccessed(List<CacheLine> set, int accessedIndex) {
-            CacheLine accessedLine = set.get(accessedIndex);
-            if (accessedLine.getMeta() + 1 == set.size())
-                // This line was already most recently accessed
-                return;
-            long oldMeta = accessedLine.getMeta();
-            for (CacheLine line : set) {
-                if (!line.isMapped())
-                    continue;
-                if (line == accessedLine)
-                    line.setMeta(set.size() - 1);
-                else if (line.getMeta() > oldMeta)
-                    line.setMeta(line.getMeta() - 1);
-            }
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new LruPolicy(config.lineCount(), config.linesPerSet());
+        }
+    },
+
+    /**
+     * Exactly the same evictions as {@link #LRU}, but simulated in constant time per access rather than time
+     * proportional to the number of lines per set; the better choice for highly associative caches
+     */
+    FAST_LRU {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new FastLruPolicy(config.lineCount(), config.linesPerSet());
         }
     },
 
@@ -38,14 +36,8 @@ public enum ReplacementAlgorithm {
      */
     FIFO {
         @Override
-        void lineLoaded(List<CacheLine> set, int fetchedIndex) {
-            CacheLine loaded = set.get(fetchedIndex);
-            for (CacheLine line : set) {
-                if (line == loaded)
-                    line.setMeta(set.size() - 1);
-                else if (line.isMapped())
-                    line.setMeta(line.getMeta() - 1);
-            }
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new FifoPolicy(config.lineCount(), config.linesPerSet());
         }
     },
 
@@ -54,59 +46,173 @@ public enum ReplacementAlgorithm {
      */
     LFU {
         @Override
-        void lineAccessed(List<CacheLine> set, int accessedIndex) {
-            CacheLine accessed = set.get(accessedIndex);
-            accessed.setMeta(accessed.getMeta() + 1);
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new LfuPolicy(config.lineCount(), config.linesPerSet());
         }
     },
 
     /**
-     * Random algorithm &mdash; the line to be evicted is chosen at random
+     * Tree pseudo-LRU &mdash; a binary tree of bits over the lines of each set points the way to a line that was not
+     * used recently; approximates LRU with one bit per line as many real L1/L2 caches do
      */
-    RANDOM {
-        private final Random random = new Random();
+    TREE_PLRU {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new TreePlruPolicy(config.lineCount(), config.linesPerSet());
+        }
+    },
 
+    /**
+     * Bit pseudo-LRU &mdash; each line has a "recently used" bit, all of which are cleared when the last one in a set
+     * would be set; the first line whose bit is clear is evicted
+     */
+    BIT_PLRU {
         @Override
-        int chooseLineToEvict(List<CacheLine> set) {
-            return random.nextInt(set.size());
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new BitPlruPolicy(config.lineCount(), config.linesPerSet());
         }
-    };
+    },
 
     /**
-     * The default replacement algorithm (currently LRU).
+     * CLOCK (second chance) algorithm &mdash; a hand sweeps round each set, evicting the first line that has not been
+     * accessed since the hand last passed it
      */
-    public static final ReplacementAlgorithm DEFAULT = LRU;
+    CLOCK {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new ClockPolicy(config.lineCount(), config.linesPerSet());
+        }
+    },
+
+    /**
+     * LRU insertion policy &mdash; evicts like {@link #LRU}, but a newly loaded line is the least recently used of its
+     * set until it gets a hit, so that a working set larger than the cache keeps most of its blocks instead of thrashing
+     */
+    LIP {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new DipPolicy(config.lineCount(), config.linesPerSet(), DipPolicy.Insertion.LRU_POSITION);
+        }
+    },
+
+    /**
+     * Bimodal insertion policy &mdash; like {@link #LIP}, except that an occasional newly loaded line is made the most
+     * recently used, so that the cache can still adapt when the working set changes
+     */
+    BIP {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new DipPolicy(config.lineCount(), config.linesPerSet(), DipPolicy.Insertion.BIMODAL);
+        }
+    },
 
     /**
-     * Called when a line is loaded into cache so that line metas may be updated as appropriate.
-     * (Default version: does nothing)
-     * @param set the lines in this set
-     * @param fetchedIndex the index in set of the line that was loaded
+     * Dynamic insertion policy &mdash; a few sets use {@link #LRU} and a few {@link #BIP}, and the rest of the cache
+     * follows whichever of them is currently missing less
      */
-    void lineLoaded(List<CacheLine> set, int fetchedIndex) {}
+    DIP {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new DipPolicy(config.lineCount(), config.linesPerSet(), DipPolicy.Insertion.DYNAMIC);
+        }
+    },
 
     /**
-     * Called when a line already in the cache is accessed so that line metas may be updated as appropriate.
-     * (Default version: does nothing)
-     * @param set the lines in this set
-     * @param accessedIndex the index in set of the line that was loaded
+     * Static re-reference interval prediction &mdash; lines are loaded as if they will not be reused soon and only
+     * promoted when they hit, so that a streaming scan does not flush out a frequently used working set
      */
-    void lineAccessed(List<CacheLine> set, int accessedIndex) {}
+    SRRIP {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new RripPolicy(config.lineCount(), config.linesPerSet(), RripPolicy.Insertion.STATIC);
+        }
+    },
 
     /**
-     * Choose which line to evict from a set.
-     * (Default version: the mapped line with the least meta)
-     * @param set the lines to choose from
-     * @return the index of the line to evict relative to the set parameter
+     * Bimodal re-reference interval prediction &mdash; like {@link #SRRIP}, but nearly all lines are loaded as if
+     * they will not be reused at all, which keeps part of a working set too large for the cache from thrashing
      */
-    int chooseLineToEvict(List<CacheLine> set) {
-        int minIndex = 0;
-        for (int i = 1; i < set.size(); ++i) {
-            CacheLine line = set.get(i);
-            if (line.isMapped() && line.getMeta() < set.get(minIndex).getMeta())
-                minIndex = i;
+    BRRIP {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new RripPolicy(config.lineCount(), config.linesPerSet(), RripPolicy.Insertion.BIMODAL);
         }
+    },
 
-        return minIndex;
+    /**
+     * Dynamic re-reference interval prediction &mdash; a few sets use {@link #SRRIP} and a few {@link #BRRIP}, and the
+     * rest of the cache follows whichever of them is currently missing less
+     */
+    DRRIP {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new RripPolicy(config.lineCount(), config.linesPerSet(), RripPolicy.Insertion.DYNAMIC);
+        }
+    },
+
+    /**
+     * Adaptive replacement cache &mdash; balances recency against frequency by splitting each set between blocks
+     * seen once and blocks seen more than once, remembering recently evicted blocks to learn which side deserves more
+     * lines; mainly of interest for fully associative caches
+     */
+    ARC {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new ArcPolicy(config.lineCount(), config.linesPerSet());
+        }
+    },
+
+    /**
+     * Low inter-reference recency set &mdash; keeps the blocks that have been reused after the shortest intervals and
+     * evicts among a small pool of the others; mainly of interest for fully associative caches
+     */
+    LIRS {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new LirsPolicy(config.lineCount(), config.linesPerSet());
+        }
+    },
+
+    /**
+     * Belady's optimal algorithm &mdash; the line whose block will be needed furthest in the future is evicted. This
+     * can only be simulated when replaying a recorded trace (see {@link #needsTrace()}), and shows how far the other
+     * algorithms are from the best possible
+     */
+    OPT {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            if (config.nextUse() == null)
+                throw new IllegalStateException("OPT replacement needs the trace's NextUse");
+            return new OptPolicy(config.lineCount(), config.linesPerSet(), config.nextUse());
+        }
+
+        @Override
+        public boolean needsTrace() {
+            return true;
+        }
+    },
+
+    /**
+     * Random algorithm &mdash; the line to be evicted is chosen at random (but repeatably: see
+     * {@link Cache.Builder#seed(long)})
+     */
+    RANDOM {
+        @Override
+        public ReplacementPolicy newPolicy(PolicyConfig config) {
+            return new RandomPolicy(config.linesPerSet(), config.seed());
+        }
+    };
+
+    /**
+     * The default replacement algorithm (currently LRU).
+     */
+    public static final ReplacementAlgorithm DEFAULT = LRU;
+
+    @Override
+    public boolean needsTrace() {
+        return false;
     }
+
+    @Override
+    public abstract ReplacementPolicy newPolicy(PolicyConfig config);
 }
@@ -0,0 +1,47 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.*;
+
+/**
+ * Looks up {@link ReplacementPolicyProvider}s by name: the built-in {@link ReplacementAlgorithm}s, followed by any
+ * providers found on the class path by {@link ServiceLoader}. The providers are only loaded the first time they are
+ * needed, and the same instance is returned every time after that.
+ */
+public final class ReplacementPolicies {
+
+    private ReplacementPolicies() {}
+
+    private static final class Registry {
+        static final Map<String, ReplacementPolicyProvider> PROVIDERS = load();
+
+        private static Map<String, ReplacementPolicyProvider> load() {
+            var providers = new LinkedHashMap<String, ReplacementPolicyProvider>();
+            for (ReplacementAlgorithm algorithm : ReplacementAlgorithm.values())
+                providers.put(algorithm.name(), algorithm);
+            for (ReplacementPolicyProvider provider : ServiceLoader.load(ReplacementPolicyProvider.class)) {
+                ReplacementPolicyProvider existing = providers.putIfAbsent(provider.name(), provider);
+                if (existing != null)
+                    throw new IllegalStateException(String.format("Replacement policies %s and %s are both named %s",
+                            existing.getClass().getName(), provider.getClass().getName(), provider.name()));
+            }
+            return Collections.unmodifiableMap(providers);
+        }
+    }
+
+    /**
+     * Returns the replacement algorithm with the given name. Throws {@link IllegalArgumentException} if there is none.
+     */
+    public static ReplacementPolicyProvider forName(String name) {
+        ReplacementPolicyProvider provider = Registry.PROVIDERS.get(name);
+        if (provider == null)
+            throw new IllegalArgumentException("No replacement algorithm named " + name);
+        return provider;
+    }
+
+    /**
+     * Returns every available replacement algorithm: the {@link ReplacementAlgorithm}s in order, then the others.
+     */
+    public static List<ReplacementPolicyProvider> all() {
+        return List.copyOf(Registry.PROVIDERS.values());
+    }
+}
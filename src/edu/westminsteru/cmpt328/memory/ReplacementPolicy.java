@@ -0,0 +1,84 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * The state and decisions of one {@link Cache}'s replacement algorithm. A policy is created for each cache by
+ * {@link ReplacementPolicyProvider#newPolicy(PolicyConfig)} and keeps whatever per-line or per-set bookkeeping it needs
+ * in primitive arrays of its own, so that no hook allocates. Policies outside this package are written the same way:
+ * subclass this, and make the subclass available through a {@link ReplacementPolicyProvider}.
+ *
+ * <p>Every hook identifies a line by its set number, the line number of the first line of that set (base) and its
+ * index within the set (way), so the cache's line number is base + way. The lines of a set are always filled in way
+ * order, and a way is only chosen for eviction once every way of its set holds a block.</p>
+ */
+public abstract class ReplacementPolicy {
+
+    /** The number of lines in each set */
+    protected final int ways;
+    /** A value per line, of the width given to the constructor; null if that was 0 */
+    protected final Metadata meta;
+
+    /** Creates a policy that keeps no metadata per line (beyond anything it allocates itself) */
+    protected ReplacementPolicy(int ways) {
+        this(0, ways, 0);
+    }
+
+    /** Creates a policy that needs metaBits bits of metadata for each line of the cache (in {@link #meta}) */
+    protected ReplacementPolicy(int lineCount, int ways, int metaBits) {
+        this.ways = ways;
+        this.meta = (metaBits == 0) ? null : new Metadata(lineCount, metaBits);
+    }
+
+    /**
+     * Called when a block has been loaded into a line after a miss. This is the only notification for the access that
+     * missed, i.e. it is not followed by {@link #lineAccessed(int, int, int)}.
+     */
+    protected abstract void lineLoaded(int set, int base, int way);
+
+    /** Called when a line already holding the requested block is accessed (a hit) */
+    protected abstract void lineAccessed(int set, int base, int way);
+
+    /** Chooses which way of a full set to evict */
+    protected abstract int chooseWayToEvict(int set, int base);
+
+    /**
+     * Called when an access to the given block misses, before anything else is done about it: before
+     * {@link #chooseWayToEvict(int, int)} (if the set is full) and {@link #lineLoaded(int, int, int)}.
+     * (Default version: does nothing)
+     */
+    protected void missed(int set, int base, long block) {}
+
+    /**
+     * Called when the block in a way chosen by {@link #chooseWayToEvict(int, int)} has been evicted, before another is
+     * loaded into it. (Default version: does nothing)
+     */
+    protected void lineEvicted(int set, int base, int way, long block) {}
+
+    /** Returns the policy's bookkeeping value for a line, as displayed by {@link Cache#print()} (Default version: the
+     * line's {@link #meta}, or 0 if there is none) */
+    protected long getMeta(int line) {
+        return (meta == null) ? 0 : meta.get(line);
+    }
+
+    /**
+     * Called when every line of a set has been vacated (which happens lazily after {@link Cache#reset()}), before any
+     * of its ways is loaded again. (Default version: does nothing)
+     */
+    protected void setCleared(int set, int base) {}
+
+    /** Called when the cache is reset. (Default version: does nothing) */
+    protected void reset() {}
+
+    /** Returns the way of a set with the least meta, preferring lower ways when several have the least */
+    protected int minWay(int base) {
+        int minLine = base;
+        long min = meta.get(base);
+        for (int line = base + 1; line < base + ways; ++line) {
+            long value = meta.get(line);
+            if (value < min) {
+                minLine = line;
+                min = value;
+            }
+        }
+        return minLine - base;
+    }
+}
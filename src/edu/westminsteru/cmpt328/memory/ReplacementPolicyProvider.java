@@ -0,0 +1,33 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * A replacement algorithm for associative/set-associative caches: creates the {@link ReplacementPolicy} that makes
+ * the algorithm's decisions for each {@link Cache} that uses it. The built-in algorithms are the
+ * {@link ReplacementAlgorithm}s; others are discovered with {@link java.util.ServiceLoader} by listing their providers
+ * (which need a public no-argument constructor) in <code>META-INF/services/</code> under this interface's name, and are
+ * then found by name through {@link ReplacementPolicies#forName(String)}.
+ *
+ * <p>A policy's hooks run on every access, so they should not allocate: keep all bookkeeping in arrays sized when the
+ * policy is created, e.g. in its {@link ReplacementPolicy#meta}.</p>
+ */
+public interface ReplacementPolicyProvider {
+
+    /**
+     * Returns the name the algorithm is referred to by, e.g. in <code>@Cache(policy = ...)</code> and saved memory
+     * system configurations. Names are case-sensitive and must not clash with another provider's.
+     */
+    String name();
+
+    /**
+     * Creates the bookkeeping for this algorithm in one cache.
+     */
+    ReplacementPolicy newPolicy(PolicyConfig config);
+
+    /**
+     * Returns true if this algorithm can only be used by a cache that replays a recorded trace whose {@link NextUse} has
+     * been given to {@link Cache.Builder#nextUse(NextUse)}. (Default version: false)
+     */
+    default boolean needsTrace() {
+        return false;
+    }
+}
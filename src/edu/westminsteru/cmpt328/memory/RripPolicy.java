@@ -0,0 +1,99 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * The re-reference interval prediction (RRIP) family of policies: {@link ReplacementAlgorithm#SRRIP},
+ * {@link ReplacementAlgorithm#BRRIP} and {@link ReplacementAlgorithm#DRRIP}. Each line has a 2-bit re-reference
+ * prediction value (RRPV), from 0 (expected to be used again soon) to 3 (not expected to be used again for a long
+ * time). A hit sets it to 0; the victim is a line with RRPV 3, after aging the whole set until there is one.
+ *
+ * <p>The variants differ only in the RRPV a newly loaded line starts with. SRRIP always starts lines at 2, so a block
+ * that is never reused is gone after the lines loaded with it, and a streaming scan cannot push out a working set
+ * that keeps getting hits. BRRIP starts lines at 3 except for one load in {@link #BIMODAL_PERIOD}, which protects a
+ * working set larger than the cache from thrashing. DRRIP dedicates a few leader sets to each and lets the rest of
+ * the cache follow whichever of the two is missing less ({@link SetDueling}, with SRRIP first).</p>
+ */
+final class RripPolicy extends ReplacementPolicy {
+
+    enum Insertion { STATIC, BIMODAL, DYNAMIC }
+
+    static final int RRPV_BITS = 2;
+    static final int MAX_RRPV = (1 << RRPV_BITS) - 1;
+    static final int BIMODAL_PERIOD = 32;
+
+    private final Insertion insertion;
+    // Loads since the last one that was given a long re-reference interval under BRRIP (a deterministic throttle, so
+    // that runs are repeatable)
+    private int bimodalCount;
+    // DRRIP: chooses between SRRIP (first) and BRRIP (second) for each set; null for the other variants
+    private final SetDueling dueling;
+
+    RripPolicy(int lineCount, int ways, Insertion insertion) {
+        super(lineCount, ways, RRPV_BITS);
+        this.insertion = insertion;
+        this.dueling = (insertion == Insertion.DYNAMIC) ? new SetDueling(lineCount / ways) : null;
+        reset();
+    }
+
+    private int get(int line) {
+        return (int)meta.get(line);
+    }
+
+    private void set(int line, int value) {
+        meta.set(line, value);
+    }
+
+    private boolean usesBimodal(int set) {
+        return switch (insertion) {
+            case STATIC -> false;
+            case BIMODAL -> true;
+            case DYNAMIC -> dueling.usesSecond(set);
+        };
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        if (dueling != null)
+            dueling.missed(set);
+
+        int value = MAX_RRPV - 1;
+        if (usesBimodal(set)) {
+            if (++bimodalCount == BIMODAL_PERIOD)
+                bimodalCount = 0;
+            else
+                value = MAX_RRPV;
+        }
+        set(base + way, value);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        set(base + way, 0);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        int victim = base, max = get(base);
+        for (int line = base + 1; line < base + ways && max < MAX_RRPV; ++line) {
+            int value = get(line);
+            if (value > max) {
+                victim = line;
+                max = value;
+            }
+        }
+
+        if (max < MAX_RRPV) {
+            // Age the whole set just enough for the oldest line to reach the maximum
+            int age = MAX_RRPV - max;
+            for (int line = base; line < base + ways; ++line)
+                set(line, get(line) + age);
+        }
+        return victim - base;
+    }
+
+    @Override
+    protected void reset() {
+        bimodalCount = 0;
+        if (dueling != null)
+            dueling.reset();
+    }
+}
@@ -0,0 +1,81 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * Set dueling: chooses at run time between two policies (called first and second) for the sets of one cache. A few
+ * leader sets always use the first policy and as many always use the second; a saturating policy selector (PSEL)
+ * counts up on misses in the first policy's leaders and down on misses in the second's, and the remaining (follower)
+ * sets use whichever policy is currently missing less. {@link ReplacementAlgorithm#DIP} and
+ * {@link ReplacementAlgorithm#DRRIP} are built this way, and a {@link ReplacementPolicy} of any other pair of
+ * policies can keep one of these to do the same.
+ *
+ * <p>The leaders are spread evenly through the cache: set s leads for the first policy if s % stride == 0 and for the
+ * second if s % stride == 1. Both questions a policy asks cost one remainder and a comparison, and nothing allocates.
+ * A cache with fewer than 4 sets cannot spare a quarter of them for each policy's leaders, so there is nothing to duel
+ * over and it always uses the first policy.</p>
+ */
+public final class SetDueling {
+
+    /** The most leader sets given to each policy by default */
+    public static final int LEADER_SETS = 32;
+    /** The width of the policy selector by default */
+    public static final int PSEL_BITS = 10;
+
+    private final int leaderStride;
+    private final int pselMax;
+    private int psel;
+
+    /** Duels over the given number of sets with the default number of leaders and width of selector */
+    public SetDueling(int sets) {
+        this(sets, LEADER_SETS, PSEL_BITS);
+    }
+
+    /**
+     * Duels over the given number of sets with up to leaderSets leaders for each policy (but never more than a quarter
+     * of the sets each, so that at least half the sets follow) and a selector of pselBits bits.
+     */
+    public SetDueling(int sets, int leaderSets, int pselBits) {
+        if (sets < 1)
+            throw new IllegalArgumentException("Must have at least one set");
+        if (leaderSets < 1)
+            throw new IllegalArgumentException("Must have at least one leader set for each policy");
+        if (pselBits < 1 || pselBits > 30)
+            throw new IllegalArgumentException("Policy selector must be 1 to 30 bits wide");
+        int leadersPerPolicy = Math.min(leaderSets, sets / 4);
+        this.leaderStride = (leadersPerPolicy == 0) ? 0 : sets / leadersPerPolicy;
+        this.pselMax = (1 << pselBits) - 1;
+        reset();
+    }
+
+    /** Returns 0 if set leads for the first policy, 1 if it leads for the second, or -1 if it is a follower */
+    private int leader(int set) {
+        if (leaderStride == 0)
+            return -1;
+        int leader = set % leaderStride;
+        return (leader <= 1) ? leader : -1;
+    }
+
+    /** Records a miss in a set; this only changes anything if the set is a leader */
+    public void missed(int set) {
+        int leader = leader(set);
+        if (leader == 0 && psel < pselMax)
+            ++psel;
+        else if (leader == 1 && psel > 0)
+            --psel;
+    }
+
+    /** Returns true if set should currently use the second policy, false if the first */
+    public boolean usesSecond(int set) {
+        int leader = leader(set);
+        return (leader == 1) || (leader == -1 && psel > pselMax / 2);
+    }
+
+    /** Returns the policy selector, which is above the middle of its range while followers use the second policy */
+    public int getSelector() {
+        return psel;
+    }
+
+    /** Forgets all misses, so that followers use the first policy until the second has missed less */
+    public void reset() {
+        psel = pselMax / 2;
+    }
+}
@@ -2,21 +2,21 @@ package edu.westminsteru.cmpt328.memory;
 
 public class StackFrame implements MemoryValue {
 
-    private final int address;
+    private final long address;
     private final int size;
 
-    StackFrame(int address, int size) {
+    StackFrame(long address, int size) {
         this.address = address;
         this.size = size;
     }
 
     @Override
-    public int getMemorySize() {
+    public long getMemorySize() {
         return size;
     }
 
     @Override
-    public int getAddress() {
+    public long getAddress() {
         return address;
     }
 }
@@ -0,0 +1,34 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * Where a {@link MainMemory} or {@link Cache} keeps the data it stores. Simulating a memory of several GiB on the Java
+ * heap makes the heap (and garbage collection pauses) just as large, so such memories can keep their data outside the
+ * heap instead; either way only the parts that are actually written take up space.
+ *
+ * <p>Off-heap data lives until the memory is {@link Memory#close() closed}, after which any access to it throws
+ * {@link IllegalStateException}. Closing drops the memory's off-heap buffers, which the JVM then frees.</p>
+ *
+ * <p>Off-heap data is allocated in direct buffers of 64 KiB as it is first written, and the JVM limits how much direct
+ * memory may be in use at once to {@code -XX:MaxDirectMemorySize}, which defaults to the maximum heap size
+ * ({@code -Xmx}). A run that writes more than that throws {@link OutOfMemoryError}, so give the JVM a larger
+ * {@code -XX:MaxDirectMemorySize} when keeping much data off the heap.</p>
+ */
+public enum Storage {
+
+    /** Data is kept in byte arrays on the Java heap (the default) */
+    HEAP,
+
+    /**
+     * Data is kept off the Java heap and belongs to the thread that created the memory: only that thread may use it
+     * and close it
+     */
+    OFF_HEAP,
+
+    /** Data is kept off the Java heap and may be used and closed by any thread */
+    OFF_HEAP_SHARED;
+
+    /** Returns true if data stored this way is kept off the Java heap */
+    public boolean isOffHeap() {
+        return this != HEAP;
+    }
+}
@@ -0,0 +1,70 @@
+package edu.westminsteru.cmpt328.memory;
+
+import java.util.BitSet;
+
+/**
+ * {@link ReplacementAlgorithm#TREE_PLRU}: each set has a binary tree with its lines as leaves and one bit per inner
+ * node pointing towards the half of the subtree that was used less recently. An access flips the bits on its path to
+ * point away from it and the victim is found by following the bits down from the root, so both take O(log ways) time.
+ *
+ * <p>When the number of lines per set is not a power of 2 the tree is sized for the next power of 2 and the missing
+ * leaves are skipped when looking for a victim.</p>
+ */
+final class TreePlruPolicy extends ReplacementPolicy {
+
+    // Number of leaves in each set's tree; the inner nodes of set s are numbered 1 to leaves - 1 (children of node n
+    // are 2n and 2n + 1, like a binary heap) and node n's bit is bits[s * leaves + n]
+    private final int leaves;
+    private final BitSet bits;
+
+    TreePlruPolicy(int lineCount, int ways) {
+        super(ways);
+        leaves = Integer.highestOneBit(ways) == ways ? ways : Integer.highestOneBit(ways) << 1;
+        bits = new BitSet((lineCount / ways) * leaves);
+    }
+
+    @Override
+    protected void lineLoaded(int set, int base, int way) {
+        lineAccessed(set, base, way);
+    }
+
+    @Override
+    protected void lineAccessed(int set, int base, int way) {
+        int root = set * leaves;
+        for (int node = leaves + way; node > 1; node >>= 1)
+            // Point the parent at the sibling: right (1) if we came from the left (even) child, and vice versa
+            bits.set(root + (node >> 1), (node & 1) == 0);
+    }
+
+    @Override
+    protected int chooseWayToEvict(int set, int base) {
+        int root = set * leaves;
+        int node = 1, first = 0, size = leaves;
+        while (node < leaves) {
+            size >>= 1;
+            if (bits.get(root + node) && first + size < ways) {
+                node = 2 * node + 1;
+                first += size;
+            } else {
+                node = 2 * node;
+            }
+        }
+        return first;
+    }
+
+    @Override
+    protected void setCleared(int set, int base) {
+        bits.clear(set * leaves, (set + 1) * leaves);
+    }
+
+    @Override
+    protected long getMeta(int line) {
+        // The number of bits on the line's path that point away from it; the next victim is the only line with 0
+        int set = line / ways, root = set * leaves;
+        long meta = 0;
+        for (int node = leaves + line % ways; node > 1; node >>= 1)
+            if (bits.get(root + (node >> 1)) != ((node & 1) == 1))
+                ++meta;
+        return meta;
+    }
+}
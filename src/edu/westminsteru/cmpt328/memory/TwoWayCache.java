@@ -0,0 +1,21 @@
+package edu.westminsteru.cmpt328.memory;
+
+/**
+ * A {@link Cache} specialized for 2-way set-associative mapping, checking both lines of a set without a loop.
+ */
+final class TwoWayCache extends Cache {
+
+    TwoWayCache(Builder b) {
+        super(b);
+    }
+
+    @Override
+    int findLine(int setNumber, int firstLineOfSet, long tag) {
+        int fill = setFill[setNumber];
+        if (fill > 0 && tags[firstLineOfSet] == tag)
+            return firstLineOfSet;
+        if (fill > 1 && tags[firstLineOfSet + 1] == tag)
+            return firstLineOfSet + 1;
+        return -1;
+    }
+}
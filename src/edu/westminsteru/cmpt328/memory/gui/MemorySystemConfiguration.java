@@ -2,6 +2,8 @@ package edu.westminsteru.cmpt328.memory.gui;
 
 import edu.westminsteru.cmpt328.memory.Bits;
 import edu.westminsteru.cmpt328.memory.ReplacementAlgorithm;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicies;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicyProvider;
 import edu.westminstercollege.klenth.json.JsonParser;
 
 import java.io.*;
@@ -18,9 +20,9 @@ public class MemorySystemConfiguration {
         final int lineCount;
         final int accessTime;
         final int ways;
-        final ReplacementAlgorithm replacement;
+        final ReplacementPolicyProvider replacement;
 
-        CacheConfiguration(int lineCount, int accessTime, int ways, ReplacementAlgorithm replacement) {
+        CacheConfiguration(int lineCount, int accessTime, int ways, ReplacementPolicyProvider replacement) {
             if (lineCount < 1)
                 throw new IllegalArgumentException("lineCount must be at least 1");
             if (accessTime < 0)
@@ -51,7 +53,7 @@ public class MemorySystemConfiguration {
             return ways;
         }
 
-        public ReplacementAlgorithm getReplacement() {
+        public ReplacementPolicyProvider getReplacement() {
             return replacement;
         }
 
@@ -91,7 +93,7 @@ public class MemorySystemConfiguration {
             return new CacheConfiguration(this.lineCount, this.accessTime, newWays, this.replacement);
         }
 
-        public CacheConfiguration withReplacement(ReplacementAlgorithm newReplacement) {
+        public CacheConfiguration withReplacement(ReplacementPolicyProvider newReplacement) {
             if (newReplacement == this.replacement)
                 return this;
             return new CacheConfiguration(this.lineCount, this.accessTime, this.ways, newReplacement);
@@ -186,7 +188,7 @@ public class MemorySystemConfiguration {
         return new CacheConfiguration(lineCount, accessTime, 1, ReplacementAlgorithm.LRU);
     }
 
-    public CacheConfiguration associativeCache(int lineCount, int accessTime, int ways, ReplacementAlgorithm replacement) {
+    public CacheConfiguration associativeCache(int lineCount, int accessTime, int ways, ReplacementPolicyProvider replacement) {
         if (ways < 2)
             throw new IllegalArgumentException("ways must be at least 2 for an associative cache");
         if (replacement == null)
@@ -224,7 +226,7 @@ public class MemorySystemConfiguration {
             out.printf("\t\t\t\"accessTime\": %d,\n", cache.getAccessTime());
             out.printf("\t\t\t\"ways\": %d", cache.getWays());
             if (cache.getWays() > 1)
-                out.printf(",\n\t\t\t\"replacement\": \"%s\"", cache.getReplacement().toString());
+                out.printf(",\n\t\t\t\"replacement\": \"%s\"", cache.getReplacement().name());
 
             if (i + 1 < caches.length)
                 out.println("\n\t\t},");
@@ -307,9 +309,9 @@ public class MemorySystemConfiguration {
                     throw new InvalidConfigurationException(String.format("Unable to parse configuration: cache %d missing key 'ways'", i));
                 int ways = ((Number) cache.get("ways")).intValue();
 
-                ReplacementAlgorithm replacement = ReplacementAlgorithm.LRU;
+                ReplacementPolicyProvider replacement = ReplacementAlgorithm.LRU;
                 if (cacheKeys.contains("replacement"))
-                    replacement = ReplacementAlgorithm.valueOf(cache.get("replacement").toString());
+                    replacement = ReplacementPolicies.forName(cache.get("replacement").toString());
                 else if (ways > 1)
                     throw new InvalidConfigurationException(String.format("Unable to parse configuration: cache %d is associative but missing key 'replacement'", i));
 
@@ -1,6 +1,8 @@
 package edu.westminsteru.cmpt328.memory.gui;
 
 import edu.westminsteru.cmpt328.memory.ReplacementAlgorithm;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicies;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicyProvider;
 
 import javax.swing.*;
 import javax.swing.table.DefaultTableCellRenderer;
@@ -62,9 +64,24 @@ public class MemorySystemTable extends JTable {
         }
     }
 
+    private static String displayName(ReplacementPolicyProvider p) {
+        if (!(p instanceof ReplacementAlgorithm r))
+            return p.name();
+        return switch (r) {
+            case RANDOM -> "Random";
+            case FAST_LRU -> "Fast LRU";
+            case TREE_PLRU -> "Tree PLRU";
+            case BIT_PLRU -> "Bit PLRU";
+            default -> r.toString();
+        };
+    }
+
     private class ReplacementEditor extends AbstractCellEditor implements TableCellEditor {
 
-        private JComboBox<ReplacementAlgorithm> box = new JComboBox<>(ReplacementAlgorithm.values());
+        // Algorithms that need a recorded trace cannot be used for running programs
+        private JComboBox<ReplacementPolicyProvider> box = new JComboBox<>(ReplacementPolicies.all().stream()
+                .filter(r -> !r.needsTrace())
+                .toArray(ReplacementPolicyProvider[]::new));
 
         {
             box.setRenderer(new DefaultListCellRenderer() {
@@ -75,10 +92,8 @@ public class MemorySystemTable extends JTable {
 
                 @Override
                 public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-                    if (value == ReplacementAlgorithm.RANDOM)
-                        value = "Random";
-                    else if (value != null)
-                        value = value.toString();
+                    if (value != null)
+                        value = displayName((ReplacementPolicyProvider)value);
                     return super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
                 }
             });
@@ -110,11 +125,9 @@ public class MemorySystemTable extends JTable {
                 }));
         setDefaultRenderer(MemorySystemTableModel.CacheWays.class,
                 new Renderer<MemorySystemTableModel.CacheWays>(Object::toString));
-        setDefaultRenderer(ReplacementAlgorithm.class,
-                new Renderer<ReplacementAlgorithm>(r ->
-                        (r == null) ? ""
-                        : (r == ReplacementAlgorithm.RANDOM) ? "Random"
-                        : r.toString()));
+        setDefaultRenderer(ReplacementPolicyProvider.class,
+                new Renderer<ReplacementPolicyProvider>(r ->
+                        (r == null) ? "" : displayName(r)));
 
         setDefaultEditor(MemorySystemTableModel.MemoryAccessTime.class,
                 new SpinnerEditor<MemorySystemTableModel.MemoryAccessTime>(0, 1_000_000, t -> t.getAccessTime()));
@@ -122,7 +135,7 @@ public class MemorySystemTable extends JTable {
                 new SpinnerEditor<MemorySystemTableModel.CacheSize>(1, 1_048_576, s -> s.getLines()));
         setDefaultEditor(MemorySystemTableModel.CacheWays.class,
                 new SpinnerEditor<MemorySystemTableModel.CacheWays>(1, 64, w -> w.getWays()));
-        setDefaultEditor(ReplacementAlgorithm.class,
+        setDefaultEditor(ReplacementPolicyProvider.class,
                 new ReplacementEditor());
 
         setShowGrid(false);
@@ -2,6 +2,7 @@ package edu.westminsteru.cmpt328.memory.gui;
 
 import edu.westminsteru.cmpt328.memory.Bits;
 import edu.westminsteru.cmpt328.memory.ReplacementAlgorithm;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicyProvider;
 
 import javax.swing.table.AbstractTableModel;
 import java.util.ArrayList;
@@ -16,9 +17,9 @@ class MemorySystemTableModel extends AbstractTableModel {
         private int accessTime;
         private int lines;
         private int ways;
-        private ReplacementAlgorithm replacement;
+        private ReplacementPolicyProvider replacement;
 
-        Cache(int accessTime, int lines, int ways, ReplacementAlgorithm replacement) {
+        Cache(int accessTime, int lines, int ways, ReplacementPolicyProvider replacement) {
             setAccessTime(accessTime);
             setLines(lines);
             setWays(ways);
@@ -55,11 +56,11 @@ class MemorySystemTableModel extends AbstractTableModel {
             this.ways = ways;
         }
 
-        public ReplacementAlgorithm getReplacement() {
+        public ReplacementPolicyProvider getReplacement() {
             return replacement;
         }
 
-        public void setReplacement(ReplacementAlgorithm replacement) {
+        public void setReplacement(ReplacementPolicyProvider replacement) {
             Objects.requireNonNull(replacement, "replacement cannot be null");
             this.replacement = replacement;
         }
@@ -279,7 +280,7 @@ class MemorySystemTableModel extends AbstractTableModel {
             case 1  -> MemoryAccessTime.class;
             case 2  -> CacheSize.class;
             case 3  -> CacheWays.class;
-            case 4  -> ReplacementAlgorithm.class;
+            case 4  -> ReplacementPolicyProvider.class;
             default -> throw new IllegalArgumentException("Invalid column index: " + columnIndex);
         };
     }
@@ -311,7 +312,7 @@ class MemorySystemTableModel extends AbstractTableModel {
                 case 1  -> c.setAccessTime(((Number)aValue).intValue());
                 case 2  -> c.setLines(((Number)aValue).intValue());
                 case 3  -> c.setWays(((Number)aValue).intValue());
-                case 4  -> c.setReplacement((ReplacementAlgorithm)aValue);
+                case 4  -> c.setReplacement((ReplacementPolicyProvider)aValue);
                 default -> throw new IllegalArgumentException(String.format("Cannot update row %d, column %d", rowIndex, columnIndex));
             }
             fireTableRowsUpdated(rowIndex, rowIndex);
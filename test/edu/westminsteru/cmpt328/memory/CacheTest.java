@@ -0,0 +1,101 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import static org.junit.Assert.*;
+
+public class CacheTest {
+
+    private static String contents(Cache cache) {
+        StringWriter out = new StringWriter();
+        cache.print(new PrintWriter(out));
+        return out.toString();
+    }
+
+    // Replays the same random reads and writes (of ints, over twice as many blocks as the caches hold, with runs of
+    // accesses to one line) on two caches built alike except as configured, resetting halfway through, and checks
+    // that every access hits or misses alike, reads the same value, and leaves the caches holding the same lines
+    private static void assertSameBehaviour(Supplier<Cache.Builder> geometry, UnaryOperator<Cache.Builder> expected,
+                                            UnaryOperator<Cache.Builder> actual) {
+        Cache expectedCache = expected.apply(geometry.get()
+                .drawingFrom(new MainMemory("RAM", 1 << 20, 100)).accessTime(1)).build();
+        Cache actualCache = actual.apply(geometry.get()
+                .drawingFrom(new MainMemory("RAM", 1 << 20, 100)).accessTime(1)).build();
+        Random random = new Random(17);
+        int blocks = 2 * expectedCache.getLineCount();
+        long address = 0;
+        for (int i = 0; i < 20000; ++i) {
+            if (random.nextInt(4) == 0)
+                address = (long)random.nextInt(blocks) * Bits.BLOCK_SIZE;
+            else
+                address = (address & ~(Bits.BLOCK_SIZE - 1))
+                        | (random.nextInt(Bits.BLOCK_SIZE / Bits.INT_SIZE) * Bits.INT_SIZE);
+            String where = "access " + i;
+            if (random.nextBoolean()) {
+                int value = random.nextInt();
+                expectedCache.writeInt(address, value);
+                actualCache.writeInt(address, value);
+            } else {
+                assertEquals(where, expectedCache.readInt(address), actualCache.readInt(address));
+            }
+            assertEquals(where, expectedCache.getHitCount(), actualCache.getHitCount());
+            assertEquals(where, expectedCache.getMissCount(), actualCache.getMissCount());
+            if (i % 1000 == 999)
+                assertEquals(where, contents(expectedCache), contents(actualCache));
+            if (i == 10000) {
+                expectedCache.reset();
+                actualCache.reset();
+            }
+        }
+    }
+
+    private static final List<Supplier<Cache.Builder>> GEOMETRIES = List.of(
+            () -> Cache.builder().lineCount(16).directMapping(),
+            () -> Cache.builder().lineCount(16).setAssociative(2, ReplacementAlgorithm.LRU),
+            () -> Cache.builder().lineCount(16).setAssociative(4, ReplacementAlgorithm.FIFO),
+            () -> Cache.builder().lineCount(64).setAssociative(8, ReplacementAlgorithm.LFU),
+            () -> Cache.builder().lineCount(64).fullyAssociative(ReplacementAlgorithm.LRU));
+
+    @Test
+    public void rememberingLastLineChangesNothing() {
+        for (Supplier<Cache.Builder> geometry : GEOMETRIES)
+            assertSameBehaviour(geometry, b -> b.rememberLastLine(false), b -> b.rememberLastLine(true));
+    }
+
+    @Test
+    public void negativeAddressesAreRejected() {
+        Cache cache = Cache.builder().drawingFrom(new MainMemory("RAM", 1 << 20, 100)).accessTime(1).lineCount(16)
+                .directMapping().build();
+        // Block -1 must not be mistaken for the remembered line, whether or not there is one
+        assertThrows(IllegalArgumentException.class, () -> cache.readInt(-4));
+        cache.readInt(0);
+        cache.reset();
+        assertThrows(IllegalArgumentException.class, () -> cache.readInt(-4));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void specializedCachesMatchGeneralOne() {
+        assertEquals(DirectMappedCache.class, GEOMETRIES.get(0).get()
+                .drawingFrom(new MainMemory(100)).accessTime(1).build().getClass());
+        assertEquals(Cache.class, GEOMETRIES.get(0).get()
+                .drawingFrom(new MainMemory(100)).accessTime(1).specialized(false).build().getClass());
+        assertSameBehaviour(GEOMETRIES.get(0), b -> b.specialized(false), b -> b.specialized(true));
+        for (ReplacementAlgorithm replacement : new ReplacementAlgorithm[] { ReplacementAlgorithm.LRU,
+                                                                            ReplacementAlgorithm.FIFO,
+                                                                            ReplacementAlgorithm.LFU }) {
+            for (int ways : new int[] { 2, 4 }) {
+                assertSameBehaviour(() -> Cache.builder().lineCount(16).setAssociative(ways, replacement),
+                                    b -> b.specialized(false), b -> b.specialized(true));
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntIndexTest {
+
+    @Test
+    public void putGetRemove() {
+        IntIndex index = new IntIndex(4);
+        assertEquals(-1, index.get(7));
+        index.put(7, 1);
+        index.put(12, 2);
+        assertEquals(1, index.get(7));
+        assertEquals(2, index.get(12));
+        index.put(7, 3);
+        assertEquals(3, index.get(7));
+        assertEquals(2, index.size());
+        index.remove(7);
+        assertEquals(-1, index.get(7));
+        assertEquals(2, index.get(12));
+        assertEquals(1, index.size());
+        index.clear();
+        assertEquals(-1, index.get(12));
+        assertEquals(0, index.size());
+    }
+
+    @Test
+    public void matchesHashMap() {
+        // Small key range relative to capacity forces lots of collisions and backward shifts on removal
+        final int capacity = 256;
+        IntIndex index = new IntIndex(capacity);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 200000; ++i) {
+            int key = random.nextInt(4 * capacity);
+            if (expected.size() < capacity && random.nextBoolean()) {
+                index.put(key, i);
+                expected.put(key, i);
+            } else {
+                index.remove(key);
+                expected.remove(key);
+            }
+            assertEquals(expected.size(), index.size());
+        }
+        for (int key = 0; key < 4 * capacity; ++key)
+            assertEquals((int)expected.getOrDefault(key, -1), index.get(key));
+    }
+
+    @Test
+    public void grown() {
+        IntIndex index = new IntIndex(4);
+        assertEquals(8, index.capacity());
+        for (int key = 0; key < 8; ++key)
+            index.put(key * 1000L, key);
+        index = index.grown();
+        assertEquals(16, index.capacity());
+        assertEquals(8, index.size());
+        for (int key = 0; key < 8; ++key)
+            assertEquals(key, index.get(key * 1000L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityTooLarge() {
+        // Would overflow the size of the table
+        new IntIndex(1 << 29);
+    }
+}
@@ -0,0 +1,98 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MainMemoryTest {
+
+    private static final int SIZE = 4 * OffHeapByteStore.CHUNK_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // A memory of each kind of storage, plus one mapped from a file, since each reads and writes values its own way
+    private List<MainMemory> memories() throws IOException {
+        List<MainMemory> memories = new ArrayList<>();
+        for (Storage storage : Storage.values())
+            memories.add(new MainMemory(storage.toString(), SIZE, 100, storage));
+        Path image = folder.newFile("ram.img").toPath();
+        Files.write(image, new byte[SIZE]);
+        memories.add(MainMemory.mapFile("Mapped", image, 100, false));
+        return memories;
+    }
+
+    @Test
+    public void bulkInts() throws IOException {
+        int[] ints = { 1, -2, 0x7fffffff, 0x12345678, 0 };
+        for (MainMemory memory : memories()) {
+            String name = memory.getName();
+            memory.writeInts(64, ints, 0, ints.length);
+            assertEquals(name, ints.length, memory.getAccessCount());
+            assertEquals(name, -2, memory.readInt(68));
+
+            // Unaligned and spanning a page (and off-heap chunk) boundary
+            long address = OffHeapByteStore.CHUNK_SIZE - 9;
+            memory.writeInts(address, ints, 1, ints.length - 1);
+            assertEquals(name, 0x12345678, memory.readInt(address + 8));
+            assertEquals(name, 0x78, memory.readByte(address + 8));
+            int[] back = new int[ints.length];
+            memory.readInts(address, back, 1, ints.length - 1);
+            for (int i = 1; i < ints.length; ++i)
+                assertEquals(name, ints[i], back[i]);
+            memory.close();
+        }
+    }
+
+    @Test
+    public void bulkDoubles() throws IOException {
+        double[] doubles = { Math.PI, -0.0, 1e300 };
+        for (MainMemory memory : memories()) {
+            String name = memory.getName();
+            double[] back = new double[3];
+            memory.writeDoubles(128, doubles, 0, 3);
+            memory.readDoubles(128, back, 0, 3);
+            assertArrayEquals(name, doubles, back, 0.0);
+            assertEquals(name, Double.doubleToLongBits(-0.0), Double.doubleToLongBits(back[1]));
+
+            long address = 2L * OffHeapByteStore.CHUNK_SIZE - 12;
+            memory.writeDoubles(address, doubles, 1, 2);
+            assertEquals(name, 1e300, memory.readDouble(address + 8), 0.0);
+            back = new double[2];
+            memory.readDoubles(address, back, 0, 2);
+            assertEquals(name, Double.doubleToLongBits(-0.0), Double.doubleToLongBits(back[0]));
+            assertEquals(name, 1e300, back[1], 0.0);
+            assertEquals(name, 11, memory.getAccessCount());
+            memory.close();
+        }
+    }
+
+    @Test
+    public void bulkRangesAreChecked() throws IOException {
+        int[] ints = new int[4];
+        double[] doubles = new double[4];
+        for (MainMemory memory : memories()) {
+            String name = memory.getName();
+            // Empty copies do nothing, wherever they are
+            memory.readInts(0, ints, 0, 0);
+            memory.writeDoubles(SIZE, doubles, 4, 0);
+            assertEquals(name, 0, memory.getAccessCount());
+
+            // Bad lengths and offsets are rejected before anything is counted
+            assertThrows(name, IndexOutOfBoundsException.class, () -> memory.writeInts(64, ints, 0, -1));
+            assertThrows(name, IndexOutOfBoundsException.class, () -> memory.readInts(64, ints, 2, 3));
+            assertThrows(name, IndexOutOfBoundsException.class, () -> memory.readDoubles(64, doubles, -1, 2));
+            assertThrows(name, IllegalArgumentException.class, () -> memory.writeDoubles(SIZE - 8, doubles, 0, 2));
+            assertEquals(name, 0, memory.getAccessCount());
+            memory.close();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+public class MappedByteStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readWriteImagePersists() throws IOException {
+        Path image = folder.getRoot().toPath().resolve("ram.img");
+        try (MainMemory ram = MainMemory.mapFile("RAM", image, Bits.NUM_ADDRESSES, 100, true)) {
+            Cache cache = Cache.builder().drawingFrom(ram).accessTime(1).lineCount(16).directMapping().build();
+            cache.writeInt(4096, 0x12345678);
+            cache.writeDouble(Bits.NUM_ADDRESSES - 8, 0.5);
+            // Evict both lines so that they are written back to the memory
+            for (int line = 0; line < 16; ++line)
+                cache.readInt(Bits.NUM_ADDRESSES / 2 + line * Bits.LINE_SIZE);
+        }
+        assertEquals(Bits.NUM_ADDRESSES, Files.size(image));
+        ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(image)).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(0x12345678, bytes.getInt(4096));
+        assertEquals(0.5, bytes.getDouble(Bits.NUM_ADDRESSES - 8), 0.0);
+
+        MainMemory reopened = MainMemory.mapFile("RAM", image, 100, true);
+        assertEquals(Bits.NUM_ADDRESSES, reopened.getSize());
+        assertEquals(0x12345678, reopened.readInt(4096));
+        // Resetting a read-write memory leaves the image alone
+        reopened.reset();
+        assertEquals(0x12345678, reopened.readInt(4096));
+        reopened.close();
+        assertThrows(IllegalStateException.class, () -> reopened.readInt(4096));
+    }
+
+    @Test
+    public void copyOnWriteLeavesImageAlone() throws IOException {
+        Path image = folder.newFile("warm.img").toPath();
+        byte[] contents = new byte[3 * 4096];
+        contents[100] = 42;
+        Files.write(image, contents);
+
+        MainMemory ram = MainMemory.mapFile("RAM", image, 100, false);
+        assertEquals(42, ram.readByte(100));
+        ram.writeByte(100, 7);
+        ram.writeInt(8192, -1);
+        assertEquals(7, ram.readByte(100));
+        ram.reset();
+        assertEquals(42, ram.readByte(100));
+        assertEquals(0, ram.readInt(8192));
+        ram.close();
+        assertArrayEquals(contents, Files.readAllBytes(image));
+
+        assertThrows(IllegalArgumentException.class, () -> MainMemory.mapFile("RAM", image, 4 * 4096, 100, false));
+    }
+
+    @Test
+    public void copyOnWriteResetRestoresWrittenPages() throws IOException {
+        Path image = folder.newFile("pages.img").toPath();
+        byte[] contents = new byte[10 * MappedByteStore.PAGE_SIZE + 100];
+        for (int i = 0; i < contents.length; ++i)
+            contents[i] = (byte)(i * 7);
+        Files.write(image, contents);
+
+        MappedByteStore store = new MappedByteStore(image, contents.length, false);
+        for (int round = 0; round < 3; ++round) {
+            // A long spanning two pages, a bulk write, a cleared range and a write to the partial last page
+            store.setLongAt(3 * MappedByteStore.PAGE_SIZE - 4, -1);
+            store.setBytes(5 * MappedByteStore.PAGE_SIZE + 10, new byte[2 * MappedByteStore.PAGE_SIZE], 0,
+                           2 * MappedByteStore.PAGE_SIZE);
+            store.clear(100, 200);
+            store.setByteAt(contents.length - 1, 0);
+            store.clear();
+            for (int i = 0; i < contents.length; ++i)
+                assertEquals("round " + round + " byte " + i, contents[i] & 0xff, store.getByteAt(i));
+        }
+        store.close();
+        assertArrayEquals(contents, Files.readAllBytes(image));
+    }
+}
@@ -0,0 +1,44 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class MetadataTest {
+
+    @Test
+    public void bitsFor() {
+        assertEquals(1, Metadata.bitsFor(0));
+        assertEquals(1, Metadata.bitsFor(1));
+        assertEquals(3, Metadata.bitsFor(7));
+        assertEquals(4, Metadata.bitsFor(8));
+        assertEquals(63, Metadata.bitsFor(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void valuesDoNotOverlap() {
+        Random random = new Random(9);
+        for (int bits = 1; bits <= 64; ++bits) {
+            final int count = 200;
+            Metadata meta = new Metadata(count, bits);
+            long[] expected = new long[count];
+            for (int i = 0; i < 5000; ++i) {
+                int index = random.nextInt(count);
+                long value = random.nextLong() & meta.max();
+                meta.set(index, value);
+                expected[index] = value;
+            }
+            for (int i = 0; i < count; ++i)
+                assertEquals("bits=" + bits, expected[i], meta.get(i));
+        }
+    }
+
+    @Test
+    public void widthIsRoundedUp() {
+        assertEquals(15, new Metadata(10, 3).max());
+        assertEquals(0xffff, new Metadata(10, 9).max());
+        assertEquals(-1L, new Metadata(10, 33).max());
+    }
+}
@@ -0,0 +1,97 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OffHeapByteStoreTest {
+
+    private static final int CHUNK = OffHeapByteStore.CHUNK_SIZE;
+
+    @Test
+    public void matchesHeapStore() {
+        OffHeapByteStore offHeap = new OffHeapByteStore(3 * CHUNK + 100, false);
+        ArrayByteStore dense = new ArrayByteStore(3 * CHUNK + 100);
+        offHeap.setDoubleAt(CHUNK - 3, Math.E);
+        dense.setDoubleAt(CHUNK - 3, Math.E);
+        offHeap.setIntAt(3 * CHUNK + 96, -7);
+        dense.setIntAt(3 * CHUNK + 96, -7);
+        assertEquals(Math.E, offHeap.getDoubleAt(CHUNK - 3), 0.0);
+        assertEquals(-7, offHeap.getIntAt(3 * CHUNK + 96));
+        // The double spans the first two chunks; the third chunk is never written and the last is only 100 bytes
+        assertEquals(2 * CHUNK + 100, offHeap.getAllocatedSize());
+
+        PagedByteStore paged = new PagedByteStore(3 * CHUNK + 100);
+        offHeap.copyTo(0, paged, 0, 3 * CHUNK + 100);
+        for (int i = 0; i < 3 * CHUNK + 100; ++i)
+            assertEquals(dense.getByteAt(i), paged.getByteAt(i));
+
+        offHeap.clear(0, CHUNK);
+        assertEquals(CHUNK + 100, offHeap.getAllocatedSize());
+        assertEquals(0, offHeap.getByteAt(CHUNK - 3));
+        assertEquals(dense.getIntAt(CHUNK + 1), offHeap.getIntAt(CHUNK + 1));
+    }
+
+    @Test
+    public void wideStoreAllocatesOnlyWrittenChunks() {
+        // A 48-bit store hashes its chunk numbers, and scattered writes each cost just one small chunk
+        OffHeapByteStore store = new OffHeapByteStore(1L << 48, false);
+        for (long i = 0; i < 100; ++i)
+            store.setIntAt(i << 40, (int)i);
+        store.setLongAt((5L << 40) + CHUNK - 4, -1);
+        assertEquals(101L * CHUNK, store.getAllocatedSize());
+        for (long i = 1; i < 100; ++i)
+            assertEquals((int)i, store.getIntAt(i << 40));
+        assertEquals(-1, store.getIntAt((5L << 40) + CHUNK));
+        assertEquals(0, store.getIntAt(3L << 39));
+
+        store.clear((7L << 40), (7L << 40) + CHUNK);
+        assertEquals(100L * CHUNK, store.getAllocatedSize());
+        assertEquals(0, store.getIntAt(7L << 40));
+        assertEquals(8, store.getIntAt(8L << 40));
+        store.clear();
+        assertEquals(0, store.getAllocatedSize());
+        assertEquals(0, store.getIntAt(8L << 40));
+    }
+
+    @Test
+    public void offHeapMemorySystem() {
+        MainMemory ram = new MainMemory("RAM", 1L << 32, 100, Storage.OFF_HEAP);
+        Cache cache = Cache.builder().drawingFrom(ram).accessTime(1).lineCount(16).setAssociative(4, ReplacementAlgorithm.LRU)
+                .storage(Storage.OFF_HEAP).build();
+        for (long i = 0; i < 64; ++i)
+            cache.writeInt(i << 26, (int)i);
+        for (long i = 0; i < 64; ++i)
+            assertEquals((int)i, cache.readInt(i << 26));
+        // All the blocks fall in one set, so reading them back has written every one of them back
+        for (long i = 0; i < 64; ++i)
+            assertEquals((int)i, ram.readInt(i << 26));
+
+        cache.close();
+        ram.close();
+        assertThrows(IllegalStateException.class, () -> ram.readInt(0));
+        assertThrows(IllegalStateException.class, () -> cache.readInt(0));
+    }
+
+    @Test
+    public void confinedToOwner() throws InterruptedException {
+        OffHeapByteStore store = new OffHeapByteStore(CHUNK, false);
+        Throwable[] thrown = new Throwable[1];
+        Thread other = new Thread(() -> {
+            try {
+                store.setIntAt(0, 1);
+            } catch (IllegalStateException e) {
+                thrown[0] = e;
+            }
+        });
+        other.start();
+        other.join();
+        assertNotNull(thrown[0]);
+
+        OffHeapByteStore shared = new OffHeapByteStore(CHUNK, true);
+        other = new Thread(() -> shared.setIntAt(0, 1));
+        other.start();
+        other.join();
+        assertEquals(1, shared.getIntAt(0));
+    }
+}
@@ -0,0 +1,142 @@
+package edu.westminsteru.cmpt328.memory;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PagedByteStoreTest {
+
+    private static final int PAGE = PagedByteStore.PAGE_SIZE;
+
+    @Test
+    public void unwrittenPagesReadAsZero() {
+        PagedByteStore store = new PagedByteStore(16 * PAGE);
+        assertEquals(0, store.getIntAt(5 * PAGE + 12));
+        assertEquals(0.0, store.getDoubleAt(PAGE - 4), 0.0);
+        assertEquals(0, store.getAllocatedPageCount());
+        store.setIntAt(3 * PAGE, -2);
+        assertEquals(1, store.getAllocatedPageCount());
+        assertEquals(-2, store.getIntAt(3 * PAGE));
+    }
+
+    @Test
+    public void valuesMaySpanPages() {
+        PagedByteStore paged = new PagedByteStore(4 * PAGE);
+        ArrayByteStore dense = new ArrayByteStore(4 * PAGE);
+        paged.setDoubleAt(2 * PAGE - 3, Math.PI);
+        dense.setDoubleAt(2 * PAGE - 3, Math.PI);
+        paged.setIntAt(PAGE - 1, 0x12345678);
+        dense.setIntAt(PAGE - 1, 0x12345678);
+        assertEquals(Math.PI, paged.getDoubleAt(2 * PAGE - 3), 0.0);
+        assertEquals(0x12345678, paged.getIntAt(PAGE - 1));
+        for (int i = 0; i < 4 * PAGE; ++i)
+            assertEquals(dense.getByteAt(i), paged.getByteAt(i));
+    }
+
+    @Test
+    public void copyAndClear() {
+        PagedByteStore paged = new PagedByteStore(4 * PAGE);
+        ArrayByteStore dense = new ArrayByteStore(4 * PAGE);
+        for (int i = 0; i < PAGE; ++i)
+            dense.setByteAt(PAGE / 2 + i, i);
+        dense.copyTo(PAGE / 2, paged, PAGE / 2, PAGE);
+        assertEquals(2, paged.getAllocatedPageCount());
+
+        ArrayByteStore back = new ArrayByteStore(4 * PAGE);
+        back.setByteAt(3 * PAGE, 1);
+        paged.copyTo(0, back, 0, 4 * PAGE);
+        for (int i = 0; i < 4 * PAGE; ++i)
+            assertEquals(dense.getByteAt(i), back.getByteAt(i));
+
+        paged.clear(PAGE / 2, 2 * PAGE);
+        assertEquals(1, paged.getAllocatedPageCount());
+        assertEquals(0, paged.getByteAt(PAGE / 2 + 1));
+        assertEquals((PAGE / 2) & 0xff, paged.getByteAt(2 * PAGE));
+    }
+
+    @Test
+    public void clearReleasesWrittenPages() {
+        PagedByteStore store = new PagedByteStore(64 * PAGE);
+        for (int page : new int[] { 7, 3, 40, 12 })
+            store.setIntAt(page * PAGE + 8, page);
+        store.clear(3 * PAGE, 4 * PAGE);
+        store.setIntAt(3 * PAGE, 1);
+        store.setIntAt(63 * PAGE, 2);
+        assertEquals(5, store.getAllocatedPageCount());
+        store.clear();
+        assertEquals(0, store.getAllocatedPageCount());
+        for (int page : new int[] { 3, 7, 12, 40, 63 })
+            assertEquals(0, store.getIntAt(page * PAGE + 8));
+
+        MainMemory memory = new MainMemory(100);
+        memory.writeDouble(Bits.NUM_ADDRESSES - 8, 1.5);
+        memory.writeInt(0, 1);
+        assertEquals(2 * PAGE, memory.getAllocatedSize());
+        memory.reset();
+        assertEquals(0, memory.getAllocatedSize());
+        assertEquals(0.0, memory.readDouble(Bits.NUM_ADDRESSES - 8), 0.0);
+    }
+
+    @Test
+    public void bulkCopies() {
+        int[] ints = { 1, -2, 0x7fffffff, 0x12345678, 0 };
+        double[] doubles = { Math.PI, -0.0, 1e300 };
+        for (ByteStore store : new ByteStore[] { new ArrayByteStore(2 * PAGE), new PagedByteStore(2 * PAGE) }) {
+            // Unaligned and spanning a page boundary
+            store.setInts(PAGE - 9, ints, 0, ints.length);
+            store.setDoubles(3, doubles, 1, 2);
+            assertEquals(0x12345678, store.getIntAt(PAGE + 3));
+            assertEquals(0x78, store.getByteAt(PAGE + 3));
+            assertEquals(1e300, store.getDoubleAt(11), 0.0);
+
+            int[] intsBack = new int[ints.length + 1];
+            store.getInts(PAGE - 9, intsBack, 1, ints.length);
+            for (int i = 0; i < ints.length; ++i)
+                assertEquals(ints[i], intsBack[i + 1]);
+            double[] doublesBack = new double[2];
+            store.getDoubles(3, doublesBack, 0, 2);
+            assertEquals(Double.doubleToLongBits(-0.0), Double.doubleToLongBits(doublesBack[0]));
+            assertEquals(1e300, doublesBack[1], 0.0);
+        }
+    }
+
+    @Test
+    public void wideAddressSpace() {
+        MainMemory memory = MainMemory.withAddressSize("RAM", Bits.MAX_ADDRESS_SIZE, 100);
+        assertEquals(Bits.MAX_ADDRESS_SIZE, memory.getAddressSize());
+        Cache cache = Cache.builder().drawingFrom(memory).accessTime(1).lineCount(64)
+                .setAssociative(4, ReplacementAlgorithm.LRU).build();
+        assertEquals(Bits.MAX_ADDRESS_SIZE, cache.getAddressSize());
+        // Blocks 2^32 bytes apart all fall in one set, so all but the last four are written back
+        for (long i = 0; i < 64; ++i)
+            cache.writeInt(i << 32, (int)i);
+        long top = (1L << Bits.MAX_ADDRESS_SIZE) - Bits.DOUBLE_SIZE;
+        cache.writeDouble(top, 2.5);
+        for (long i = 0; i < 60; ++i)
+            assertEquals((int)i, memory.readInt(i << 32));
+        for (long i = 0; i < 64; ++i)
+            assertEquals((int)i, cache.readInt(i << 32));
+        assertEquals(2.5, cache.readDouble(top), 0.0);
+        // A batch of wide addresses, all of them blocks just read
+        long hits = cache.getHitCount();
+        cache.touchAll(new long[] { 62L << 32, 63L << 32, top }, new int[] { 4, 4, 8 }, new boolean[3], 0, 3);
+        assertEquals(hits + 3, cache.getHitCount());
+
+        // A store this wide hashes its page table; releasing pages moves others into their slots
+        PagedByteStore store = new PagedByteStore(1L << Bits.MAX_ADDRESS_SIZE);
+        for (long i = 0; i < 64; ++i)
+            store.setIntAt(i << 32, (int)i);
+        for (long i = 0; i < 64; i += 2)
+            store.clear(i << 32, (i << 32) + PAGE);
+        assertEquals(32, store.getAllocatedPageCount());
+        for (long i = 0; i < 64; ++i)
+            assertEquals((i % 2 == 0) ? 0 : (int)i, store.getIntAt(i << 32));
+        store.clear();
+        assertEquals(0, store.getIntAt(63L << 32));
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void readPastEnd() {
+        new PagedByteStore(PAGE).getByteAt(PAGE);
+    }
+}
@@ -0,0 +1,492 @@
+package edu.westminsteru.cmpt328.memory;
+
+import edu.westminsteru.cmpt328.memory.plugin.MruPolicyProvider;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class ReplacementPolicyTest {
+
+    private static Cache cache(int lineCount, int ways, ReplacementPolicyProvider replacement) {
+        MainMemory memory = new MainMemory("RAM", 1 << 20, 100, true);
+        return Cache.builder()
+                .drawingFrom(memory)
+                .accessTime(1)
+                .lineCount(lineCount)
+                .setAssociative(ways, replacement)
+                .timingOnly()
+                .build();
+    }
+
+    private static String contents(Cache cache) {
+        StringWriter out = new StringWriter();
+        cache.print(new PrintWriter(out));
+        return out.toString();
+    }
+
+    // Drives both caches with the same skewed random accesses (so that there are plenty of hits as well as misses),
+    // resetting now and then, and checks that they end up in the same state
+    private static void assertSameDecisions(Cache expected, Cache actual) {
+        Random random = new Random(42);
+        int blocks = 3 * expected.getLineCount();
+        for (int i = 0; i < 50000; ++i) {
+            int block = Math.min(random.nextInt(blocks), random.nextInt(blocks));
+            int address = block * Bits.BLOCK_SIZE;
+            boolean write = random.nextInt(4) == 0;
+            expected.touch(address, Bits.INT_SIZE, write);
+            actual.touch(address, Bits.INT_SIZE, write);
+            assertEquals(expected.getHitCount(), actual.getHitCount());
+            if (i % 20000 == 19999) {
+                assertEquals(contents(expected), contents(actual));
+                expected.reset();
+                actual.reset();
+            }
+        }
+        assertEquals(contents(expected), contents(actual));
+    }
+
+    @Test
+    public void fastLruMatchesLru() {
+        assertSameDecisions(cache(64, 8, ReplacementAlgorithm.LRU), cache(64, 8, ReplacementAlgorithm.FAST_LRU));
+        assertSameDecisions(cache(64, 64, ReplacementAlgorithm.LRU), cache(64, 64, ReplacementAlgorithm.FAST_LRU));
+    }
+
+    @Test
+    public void treePlru() {
+        ReplacementPolicy policy = new TreePlruPolicy(4, 4);
+        for (int way = 0; way < 4; ++way)
+            policy.lineLoaded(0, 0, way);
+        assertEquals(0, policy.chooseWayToEvict(0, 0));
+        policy.lineAccessed(0, 0, 0);
+        assertEquals(2, policy.chooseWayToEvict(0, 0));
+
+        // With 3 ways the fourth leaf of the tree does not exist and must never be chosen
+        policy = new TreePlruPolicy(3, 3);
+        for (int way = 0; way < 3; ++way)
+            policy.lineLoaded(0, 0, way);
+        assertEquals(0, policy.chooseWayToEvict(0, 0));
+        policy.lineAccessed(0, 0, 0);
+        assertEquals(2, policy.chooseWayToEvict(0, 0));
+    }
+
+    @Test
+    public void bitPlru() {
+        ReplacementPolicy policy = new BitPlruPolicy(8, 4);
+        for (int way = 0; way < 4; ++way)
+            policy.lineLoaded(1, 4, way);
+        // Setting the last bit cleared the others
+        assertEquals(0, policy.chooseWayToEvict(1, 4));
+        assertEquals(1, policy.getMeta(7));
+        policy.lineAccessed(1, 4, 0);
+        assertEquals(1, policy.chooseWayToEvict(1, 4));
+    }
+
+    @Test
+    public void clock() {
+        ReplacementPolicy policy = new ClockPolicy(3, 3);
+        for (int way = 0; way < 3; ++way)
+            policy.lineLoaded(0, 0, way);
+        // Every line is referenced, so the hand goes all the way round
+        assertEquals(0, policy.chooseWayToEvict(0, 0));
+        policy.lineLoaded(0, 0, 0);
+        policy.lineAccessed(0, 0, 2);
+        assertEquals(1, policy.chooseWayToEvict(0, 0));
+        policy.lineLoaded(0, 0, 1);
+        assertEquals(2, policy.chooseWayToEvict(0, 0));
+    }
+
+    // Hits when a hot working set of 4 blocks per set, used twice in a row, alternates with a scan through 16 blocks per
+    // set that are never seen again; under LRU the scan always pushes the hot blocks out
+    private static long hitsWithScan(ReplacementAlgorithm replacement) {
+        Cache cache = cache(64, 16, replacement);
+        int scanBlock = 1000;
+        for (int round = 0; round < 200; ++round) {
+            for (int pass = 0; pass < 2; ++pass)
+                for (int hot = 0; hot < 16; ++hot)
+                    cache.touch(hot * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+            for (int i = 0; i < 64; ++i)
+                cache.touch(scanBlock++ * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+        }
+        return cache.getHitCount();
+    }
+
+    @Test
+    public void rripResistsScans() {
+        long lru = hitsWithScan(ReplacementAlgorithm.LRU);
+        assertEquals(200 * 16, lru);
+        assertTrue(hitsWithScan(ReplacementAlgorithm.SRRIP) > lru + 190 * 16);
+        assertTrue(hitsWithScan(ReplacementAlgorithm.DRRIP) > lru + 150 * 16);
+    }
+
+    // A direct transcription of ARC as published, for a cache of c blocks
+    private static final class ReferenceArc {
+        final int c;
+        final LinkedHashSet<Integer> t1 = new LinkedHashSet<>(), t2 = new LinkedHashSet<>(),
+                                     b1 = new LinkedHashSet<>(), b2 = new LinkedHashSet<>();
+        int p = 0;
+
+        ReferenceArc(int c) {
+            this.c = c;
+        }
+
+        private static int removeLru(LinkedHashSet<Integer> list) {
+            int x = list.iterator().next();
+            list.remove(x);
+            return x;
+        }
+
+        private void replace(int x) {
+            if (!t1.isEmpty() && ((b2.contains(x) && t1.size() == p) || t1.size() > p))
+                b1.add(removeLru(t1));
+            else
+                b2.add(removeLru(t2));
+        }
+
+        boolean access(int x) {
+            if (t1.remove(x) || t2.remove(x)) {
+                t2.add(x);
+                return true;
+            }
+            if (b1.contains(x)) {
+                p = Math.min(c, p + Math.max(b2.size() / b1.size(), 1));
+                replace(x);
+                b1.remove(x);
+                t2.add(x);
+            } else if (b2.contains(x)) {
+                p = Math.max(0, p - Math.max(b1.size() / b2.size(), 1));
+                replace(x);
+                b2.remove(x);
+                t2.add(x);
+            } else {
+                int total = t1.size() + t2.size() + b1.size() + b2.size();
+                if (t1.size() + b1.size() == c) {
+                    if (t1.size() < c) {
+                        removeLru(b1);
+                        replace(x);
+                    } else {
+                        removeLru(t1);
+                    }
+                } else if (total >= c) {
+                    if (total == 2 * c)
+                        removeLru(b2);
+                    replace(x);
+                }
+                t1.add(x);
+            }
+            return false;
+        }
+    }
+
+    private static long loopHits(ReplacementAlgorithm replacement) {
+        // 1024 lines, 4 ways: loop over half as many blocks again as the cache holds, which LRU always misses
+        Cache cache = cache(1024, 4, replacement);
+        for (int pass = 0; pass < 50; ++pass)
+            for (int block = 0; block < 1536; ++block)
+                cache.touch(block * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+        return cache.getHitCount();
+    }
+
+    @Test
+    public void insertionPoliciesAvoidThrashing() {
+        assertEquals(0, loopHits(ReplacementAlgorithm.LRU));
+        assertTrue(loopHits(ReplacementAlgorithm.LIP) > 40 * 768);
+        assertTrue(loopHits(ReplacementAlgorithm.BIP) > 40 * 768);
+        // Only the followers and BIP's leaders get hits, but those are most of the cache
+        assertTrue(loopHits(ReplacementAlgorithm.DIP) > 30 * 768);
+    }
+
+    // Hits of LIP (or BIP if bimodal) with a fully associative cache of the given size, simulated with an explicit
+    // recency stack (least recently used first)
+    private static boolean[] referenceInsertionHits(int[] blocks, int size, boolean bimodal) {
+        List<Integer> stack = new ArrayList<>();
+        boolean[] hits = new boolean[blocks.length];
+        int loads = 0;
+        for (int i = 0; i < blocks.length; ++i) {
+            Integer block = blocks[i];
+            if (stack.remove(block)) {
+                hits[i] = true;
+                stack.add(block);
+                continue;
+            }
+            if (stack.size() == size)
+                stack.remove(0);
+            if (bimodal && ++loads == DipPolicy.BIMODAL_PERIOD) {
+                loads = 0;
+                stack.add(block);
+            } else {
+                stack.add(0, block);
+            }
+        }
+        return hits;
+    }
+
+    @Test
+    public void insertionPoliciesMatchReference() {
+        // LIP filling a 4-way set: the lines loaded later rank below the earlier ones, so after hits to ways 0 and 3 the
+        // stack is [3, 0, 1, 2] and way 2 goes
+        ReplacementPolicy policy = new DipPolicy(4, 4, DipPolicy.Insertion.LRU_POSITION);
+        for (int way = 0; way < 4; ++way)
+            policy.lineLoaded(0, 0, way);
+        policy.lineAccessed(0, 0, 0);
+        policy.lineAccessed(0, 0, 3);
+        assertEquals(2, policy.chooseWayToEvict(0, 0));
+
+        Random random = new Random(13);
+        int[] blocks = new int[20000];
+        for (int i = 0; i < blocks.length; ++i)
+            blocks[i] = Math.min(random.nextInt(40), random.nextInt(40));
+        for (ReplacementAlgorithm replacement : new ReplacementAlgorithm[] { ReplacementAlgorithm.LIP,
+                                                                            ReplacementAlgorithm.BIP }) {
+            boolean[] expected = referenceInsertionHits(blocks, 16, replacement == ReplacementAlgorithm.BIP);
+            Cache cache = cache(16, 16, replacement);
+            for (int i = 0; i < blocks.length; ++i) {
+                long hits = cache.getHitCount();
+                cache.touch(blocks[i] * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+                assertEquals(replacement + " access " + i, expected[i], cache.getHitCount() > hits);
+            }
+        }
+    }
+
+    @Test
+    public void setDueling() {
+        SetDueling dueling = new SetDueling(64, 4, 4);
+        // Sets 0, 16, 32, 48 lead for the first policy and 1, 17, 33, 49 for the second
+        assertFalse(dueling.usesSecond(16));
+        assertTrue(dueling.usesSecond(17));
+        assertFalse(dueling.usesSecond(5));
+        for (int i = 0; i < 100; ++i)
+            dueling.missed(32);
+        assertEquals(15, dueling.getSelector());
+        assertTrue(dueling.usesSecond(5));
+        assertFalse(dueling.usesSecond(0));
+        for (int i = 0; i < 8; ++i)
+            dueling.missed(49);
+        assertFalse(dueling.usesSecond(5));
+        dueling.missed(5);
+        assertEquals(7, dueling.getSelector());
+        assertFalse(new SetDueling(1).usesSecond(0));
+
+        // With the default number of leaders a 64-set cache gets 16 for each policy, leaving half the sets to follow
+        dueling = new SetDueling(64);
+        for (int i = 0; i < 2000; ++i)
+            dueling.missed(0);
+        int second = 0;
+        for (int set = 0; set < 64; ++set)
+            if (dueling.usesSecond(set))
+                ++second;
+        assertEquals(48, second);
+        for (int i = 0; i < 4000; ++i)
+            dueling.missed(1);
+        second = 0;
+        for (int set = 0; set < 64; ++set)
+            if (dueling.usesSecond(set))
+                ++second;
+        assertEquals(16, second);
+    }
+
+    @Test
+    public void arcMatchesReference() {
+        Cache cache = cache(16, 16, ReplacementAlgorithm.ARC);
+        ReferenceArc reference = new ReferenceArc(16);
+        Random random = new Random(3);
+        for (int i = 0; i < 100000; ++i) {
+            // Alternate between phases favouring recency and frequency so that p moves both ways
+            int block = ((i / 5000) % 2 == 0)
+                    ? Math.min(random.nextInt(64), random.nextInt(64))
+                    : random.nextInt(24);
+            long hits = cache.getHitCount();
+            cache.touch(block * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+            assertEquals("access " + i, reference.access(block), cache.getHitCount() > hits);
+        }
+    }
+
+    @Test
+    public void lirsKeepsLoopsLargerThanTheCache() {
+        // Looping over 20 blocks with 16 lines: LRU always evicts the block needed next, while LIRS keeps 15 LIR blocks
+        // and cycles the rest through its single HIR line
+        Cache lru = cache(16, 16, ReplacementAlgorithm.LRU), lirs = cache(16, 16, ReplacementAlgorithm.LIRS);
+        for (int round = 0; round < 100; ++round) {
+            for (int block = 0; block < 20; ++block) {
+                lru.touch(block * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+                lirs.touch(block * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+            }
+        }
+        assertEquals(0, lru.getHitCount());
+        assertEquals(15 * 99, lirs.getHitCount());
+    }
+
+    @Test
+    public void resetCacheBehavesLikeNewOne() {
+        for (ReplacementAlgorithm replacement : ReplacementAlgorithm.values()) {
+            if (replacement.needsTrace())
+                continue;
+            Cache used = cache(64, 8, replacement);
+            Random random = new Random(11);
+            for (int i = 0; i < 5000; ++i)
+                used.touch(random.nextInt(1 << 14) & ~(Bits.INT_SIZE - 1), Bits.INT_SIZE, false);
+            used.reset();
+
+            Cache fresh = cache(64, 8, replacement);
+            for (int i = 0; i < 5000; ++i) {
+                int address = Math.min(random.nextInt(1 << 14), random.nextInt(1 << 14)) & ~(Bits.INT_SIZE - 1);
+                used.touch(address, Bits.INT_SIZE, false);
+                fresh.touch(address, Bits.INT_SIZE, false);
+            }
+            assertEquals(replacement.toString(), fresh.getHitCount(), used.getHitCount());
+            assertEquals(replacement.toString(), contents(fresh), contents(used));
+        }
+    }
+
+    @Test
+    public void nextUse() {
+        int b = Bits.BLOCK_SIZE;
+        NextUse nextUse = NextUse.of(new int[] { 0, b, 4, 2 * b, b + 8, 0 });
+        assertEquals(6, nextUse.length());
+        assertEquals(2, nextUse.distance(0));
+        assertEquals(3, nextUse.distance(1));
+        assertEquals(3, nextUse.distance(2));
+        assertEquals(NextUse.NEVER, nextUse.distance(3));
+        assertEquals(NextUse.NEVER, nextUse.distance(4));
+        assertEquals(NextUse.NEVER, nextUse.distance(5));
+
+        // Many more distinct blocks than the table starts with, so it has to grow
+        int[] addresses = new int[30000];
+        for (int i = 0; i < addresses.length; ++i)
+            addresses[i] = (i % 10000) * b;
+        nextUse = NextUse.of(addresses);
+        for (int i = 0; i < addresses.length; ++i)
+            assertEquals(i < 20000 ? 10000 : NextUse.NEVER, nextUse.distance(i));
+    }
+
+    // Misses of Belady's algorithm with a fully associative cache of the given size, simulated the slow way
+    private static int referenceOptMisses(int[] blocks, int size) {
+        List<Integer> cached = new ArrayList<>();
+        int misses = 0;
+        for (int i = 0; i < blocks.length; ++i) {
+            if (cached.contains(blocks[i]))
+                continue;
+            ++misses;
+            if (cached.size() == size) {
+                int victim = 0, furthest = -1;
+                for (int k = 0; k < size; ++k) {
+                    int next = i + 1;
+                    while (next < blocks.length && blocks[next] != cached.get(k))
+                        ++next;
+                    if (next > furthest) {
+                        furthest = next;
+                        victim = k;
+                    }
+                }
+                cached.remove(victim);
+            }
+            cached.add(blocks[i]);
+        }
+        return misses;
+    }
+
+    @Test
+    public void optIsOptimal() {
+        Random random = new Random(5);
+        int[] blocks = new int[20000];
+        long[] trace = new long[blocks.length];
+        for (int i = 0; i < blocks.length; ++i) {
+            blocks[i] = Math.min(random.nextInt(100), random.nextInt(100));
+            trace[i] = PackedAccess.pack(blocks[i] * Bits.BLOCK_SIZE, Bits.INT_SIZE, false);
+        }
+
+        MainMemory memory = new MainMemory("RAM", 1 << 20, 100, true);
+        Cache opt = Cache.builder()
+                .drawingFrom(memory)
+                .accessTime(1)
+                .lineCount(16)
+                .fullyAssociative(ReplacementAlgorithm.OPT)
+                .nextUse(NextUse.ofPacked(trace))
+                .timingOnly()
+                .build();
+        opt.touchAll(trace, 0, trace.length);
+        assertEquals(referenceOptMisses(blocks, 16), opt.getMissCount());
+
+        for (ReplacementAlgorithm replacement : ReplacementAlgorithm.values()) {
+            if (replacement.needsTrace())
+                continue;
+            Cache other = cache(16, 16, replacement);
+            other.touchAll(trace, 0, trace.length);
+            assertTrue(replacement.toString(), other.getMissCount() >= opt.getMissCount());
+        }
+
+        // Replaying the trace again after a reset gives the same result, but going beyond its end is an error
+        opt.reset();
+        opt.touchAll(trace, 0, trace.length);
+        assertEquals(referenceOptMisses(blocks, 16), opt.getMissCount());
+        assertThrows(IllegalStateException.class, () -> opt.touch(0, Bits.INT_SIZE, false));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void optNeedsTrace() {
+        cache(16, 4, ReplacementAlgorithm.OPT);
+    }
+
+    @Test
+    public void randomIsRepeatable() {
+        Cache first = cache(64, 8, ReplacementAlgorithm.RANDOM), second = cache(64, 8, ReplacementAlgorithm.RANDOM);
+        assertSameDecisions(first, second);
+
+        MainMemory memory = new MainMemory("RAM", 1 << 20, 100, true);
+        Cache reseeded = first.cloneBuilder().drawingFrom(memory).accessTime(1).seed(1).build();
+        first.reset();
+        Random random = new Random(1);
+        for (int i = 0; i < 5000; ++i) {
+            int address = random.nextInt(1 << 14) & ~(Bits.INT_SIZE - 1);
+            first.touch(address, Bits.INT_SIZE, false);
+            reseeded.touch(address, Bits.INT_SIZE, false);
+        }
+        assertNotEquals(contents(first), contents(reseeded));
+    }
+
+    @Test
+    public void everyAlgorithmRuns() {
+        Random random = new Random(7);
+        for (ReplacementAlgorithm replacement : ReplacementAlgorithm.values()) {
+            if (replacement.needsTrace())
+                continue;
+            for (int ways : new int[] { 3, 16 }) {
+                Cache cache = cache(16 * ways, ways, replacement);
+                for (int i = 0; i < 10000; ++i)
+                    cache.touch(random.nextInt(1 << 16) & ~(Bits.INT_SIZE - 1), Bits.INT_SIZE, random.nextBoolean());
+                assertEquals(replacement + " " + ways, 10000, cache.getAccessCount());
+                assertTrue(replacement + " " + ways, cache.getHitCount() > 0);
+            }
+        }
+    }
+
+    @Test
+    public void pluggedInPolicy() {
+        assertSame(ReplacementAlgorithm.LRU, ReplacementPolicies.forName("LRU"));
+        ReplacementPolicyProvider mru = ReplacementPolicies.forName("MRU");
+        assertTrue(mru instanceof MruPolicyProvider);
+        assertTrue(ReplacementPolicies.all().contains(mru));
+
+        // Looping over one block more than a set holds: LRU always evicts the next block needed, MRU keeps most
+        Cache lru = cache(4, 4, ReplacementAlgorithm.LRU);
+        Cache plugged = cache(4, 4, mru);
+        for (int i = 0; i < 100; ++i) {
+            int address = (i % 5) * Bits.BLOCK_SIZE;
+            lru.touch(address, Bits.INT_SIZE, false);
+            plugged.touch(address, Bits.INT_SIZE, false);
+        }
+        assertEquals(0, lru.getHitCount());
+        assertTrue(plugged.getHitCount() > 50);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownPolicy() {
+        ReplacementPolicies.forName("NO_SUCH_POLICY");
+    }
+}
@@ -0,0 +1,48 @@
+package edu.westminsteru.cmpt328.memory.plugin;
+
+import edu.westminsteru.cmpt328.memory.PolicyConfig;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicy;
+import edu.westminsteru.cmpt328.memory.ReplacementPolicyProvider;
+
+/**
+ * MRU (most recently used) replacement, plugged in from outside the memory package through
+ * META-INF/services/edu.westminsteru.cmpt328.memory.ReplacementPolicyProvider.
+ */
+public final class MruPolicyProvider implements ReplacementPolicyProvider {
+
+    @Override
+    public String name() {
+        return "MRU";
+    }
+
+    @Override
+    public ReplacementPolicy newPolicy(PolicyConfig config) {
+        return new MruPolicy(config.lineCount(), config.linesPerSet());
+    }
+
+    private static final class MruPolicy extends ReplacementPolicy {
+
+        // The way of each set that was used last
+        private final int[] last;
+
+        MruPolicy(int lineCount, int ways) {
+            super(ways);
+            last = new int[lineCount / ways];
+        }
+
+        @Override
+        protected void lineLoaded(int set, int base, int way) {
+            last[set] = way;
+        }
+
+        @Override
+        protected void lineAccessed(int set, int base, int way) {
+            last[set] = way;
+        }
+
+        @Override
+        protected int chooseWayToEvict(int set, int base) {
+            return last[set];
+        }
+    }
+}